@@ -0,0 +1,173 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Actor;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The list of actors of a simulation. It is an array list that is cheap to
+ * step through: the dead are dropped all at once at the end of a step, by
+ * {@link #removeInactive} or by cutting off the tail, rather than one at a time
+ * with every later actor shifted down each time. Actors keep their order, so
+ * a run does not depend on how the list is kept.
+ * <p>
+ * Appending another list copies its actors straight into the array, growing it
+ * at most once. Lists of other classes, which may make their actors as they are
+ * read, are copied through get.
+ *
+ * @author asty
+ */
+public class ActorList extends AbstractList<Actor> implements RandomAccess {
+    // The number of actors room is first made for.
+    private static final int INITIAL_CAPACITY = 16;
+
+    // The actors; the slots past size are null.
+    private Actor[] elements;
+    // The number of actors in the list.
+    private int size;
+
+    /**
+     * Create an empty list.
+     */
+    public ActorList() {
+        elements = new Actor[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public Actor get(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    @Override
+    public Actor set(int index, Actor actor) {
+        checkIndex(index);
+        Actor old = elements[index];
+        elements[index] = actor;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Actor actor) {
+        ensureCapacity(size + 1);
+        elements[size++] = actor;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, Actor actor) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = actor;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Actor remove(int index) {
+        checkIndex(index);
+        Actor old = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        elements[--size] = null;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Actor> actors) {
+        int count = actors.size();
+        if (count == 0) {
+            return false;
+        }
+        ensureCapacity(size + count);
+        if (actors.getClass() == ActorList.class) {
+            System.arraycopy(((ActorList) actors).elements, 0, elements, size, count);
+            size += count;
+        } else if (actors instanceof List && actors instanceof RandomAccess) {
+            List<? extends Actor> list = (List<? extends Actor>) actors;
+            for (int i = 0; i < count; i++) {
+                elements[size++] = list.get(i);
+            }
+        } else {
+            for (Actor actor : actors) {
+                elements[size++] = actor;
+            }
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        truncate(0);
+    }
+
+    @Override
+    protected void removeRange(int from, int to) {
+        System.arraycopy(elements, to, elements, from, size - to);
+        truncate(size - (to - from));
+    }
+
+    /**
+     * Drop the actors that are no longer active, keeping the order of the others.
+     * This takes one pass however many have died.
+     *
+     * @return The number of actors dropped.
+     */
+    public int removeInactive() {
+        int live = 0;
+        for (int i = 0; i < size; i++) {
+            Actor actor = elements[i];
+            if (actor.isActive()) {
+                elements[live++] = actor;
+            }
+        }
+        int removed = size - live;
+        truncate(live);
+        return removed;
+    }
+
+    /**
+     * Drop every actor from the given position on.
+     *
+     * @param length The number of actors to keep.
+     */
+    public void truncate(int length) {
+        if (length < size) {
+            Arrays.fill(elements, length, size, null);
+            size = length;
+            modCount++;
+        }
+    }
+
+    /**
+     * Make sure the list can hold the given number of actors without growing.
+     *
+     * @param capacity The number of actors.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > elements.length) {
+            int grown = elements.length + (elements.length >> 1);
+            elements = Arrays.copyOf(elements, Math.max(capacity, grown));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package no.ntnu.predpreysim;
+
+import java.util.Arrays;
+
+/**
+ * Hands out 32-bit handles for actors, so that a field can refer to its actors
+ * with plain ints. A handle is valid from register until release; released
+ * handles are reused. Handle 0 never refers to an actor.
+ *
+ * @author asty
+ */
+class ActorRegistry {
+    // The handle that never refers to an actor.
+    static final int NO_HANDLE = 0;
+
+    // The actor of each handle.
+    private Object[] actors = new Object[1024];
+    // The shared location of each handle, created on first use.
+    private Location[] locations = new Location[1024];
+    // The released handles, as a stack.
+    private int[] free = new int[64];
+    private int freeCount;
+    // The lowest handle that has never been handed out.
+    private int next = 1;
+
+    /**
+     * Give an actor a handle.
+     *
+     * @param actor The actor.
+     * @return The new handle.
+     */
+    int register(Object actor) {
+        int handle;
+        if (freeCount > 0) {
+            handle = free[--freeCount];
+        } else {
+            if (next == actors.length) {
+                if (next == Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Out of actor handles");
+                }
+                int length = (int) Math.min(Integer.MAX_VALUE - 8, actors.length * 2L);
+                actors = Arrays.copyOf(actors, length);
+                locations = Arrays.copyOf(locations, length);
+            }
+            handle = next++;
+        }
+        actors[handle] = actor;
+        return handle;
+    }
+
+    /**
+     * Give a handle back for reuse.
+     *
+     * @param handle A handle returned by register.
+     */
+    void release(int handle) {
+        actors[handle] = null;
+        locations[handle] = null;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = handle;
+    }
+
+    /**
+     * @return The actor of a handle, or null for NO_HANDLE.
+     */
+    Object get(int handle) {
+        return actors[handle];
+    }
+
+    /**
+     * Return the shared location kept with a handle, creating it if needed.
+     */
+    Location location(int handle, int row, int col, int zindex) {
+        Location location = locations[handle];
+        if (location == null) {
+            location = new Location(row, col, zindex);
+            locations[handle] = location;
+        }
+        return location;
+    }
+
+    /**
+     * Release every handle.
+     */
+    void clear() {
+        Arrays.fill(actors, null);
+        Arrays.fill(locations, null);
+        freeCount = 0;
+        next = 1;
+    }
+}
@@ -0,0 +1,111 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Flower;
+import no.ntnu.predpreysim.actor.Fox;
+import no.ntnu.predpreysim.actor.Grass;
+import no.ntnu.predpreysim.actor.Rabbit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * What the batch runners, {@link Ensemble} and {@link ParameterSweep}, have in
+ * common: the species they follow, running headless simulations to the end,
+ * and running many of them on a pool of threads.
+ *
+ * @author asty
+ */
+final class BatchRunner {
+    // The species whose populations are followed, unless told otherwise.
+    static final Class<?>[] DEFAULT_SPECIES = {Fox.class, Rabbit.class, Grass.class, Flower.class};
+
+    private BatchRunner() {
+    }
+
+    /**
+     * Run a simulation on the current thread, with its own generator seeded
+     * with the given seed, and record its populations.
+     *
+     * @param seed      The seed of the run.
+     * @param simulator Makes the simulator of the run; it is called once the generator is bound.
+     * @param species   The species to follow.
+     * @param steps     The number of steps to run.
+     * @return The populations, by species and step; step 0 is the start.
+     */
+    static int[][] populations(long seed, Supplier<Simulator> simulator, Class<?>[] species, int steps) {
+        int[][] series = new int[species.length][steps + 1];
+        Randomizer.Stream previous = Randomizer.bind(Randomizer.seeded(seed));
+        try {
+            Simulator run = simulator.get();
+            run.setOutputPolicy(OutputPolicy.none());
+            Field field = run.getField();
+            for (int step = 0; step <= steps; step++) {
+                if (step > 0) {
+                    run.simulateOneStep();
+                }
+                for (int s = 0; s < species.length; s++) {
+                    series[s][step] = field.getCount(species[s]);
+                }
+            }
+        } finally {
+            Randomizer.bind(previous);
+        }
+        return series;
+    }
+
+    /**
+     * Run a number of tasks on a pool, wait for all of them and shut the pool
+     * down. A task that fails makes this fail with the same exception.
+     *
+     * @param pool     The pool to run on.
+     * @param count    The number of tasks.
+     * @param task     Runs the task with the given index.
+     * @param activity What the tasks are part of, for the message if interrupted.
+     */
+    static void runAll(ExecutorService pool, int count, IntConsumer task, String activity) {
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                tasks.add(() -> {
+                    task.accept(index);
+                    return null;
+                });
+            }
+            for (Future<Void> done : pool.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during " + activity, e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Rethrow the exception a task failed with, as it was thrown where that
+     * can be done.
+     *
+     * @param e The failure of the task.
+     * @return An exception to throw, if the cause could not be rethrown as is.
+     */
+    static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+}
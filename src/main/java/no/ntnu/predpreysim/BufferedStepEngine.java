@@ -0,0 +1,195 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Actor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lets the actors act on the field as it was at the start of the step, and builds
+ * the field for the next step from the outcome. The result does not depend on the
+ * order of the actors in the list.
+ * <p>
+ * While the actors act, the field is frozen (see {@link Field#isBuffered}): every
+ * actor sees the same field, moves and births only change where the actors think
+ * they are, and changes to other actors, such as being eaten, are put off until
+ * everyone has acted. Each actor draws its random numbers from a stream keyed by
+ * the run seed, the step and the cell it started in.
+ * <p>
+ * Eating is a claim on the food (see {@link Field#claimMeal}): when several actors
+ * go for the same food, the one with the highest priority gets it. An actor that
+ * is eaten or killed by another loses the young it had in the step.
+ * <p>
+ * Then every surviving and newborn actor claims the cell it ended up in. An actor
+ * that stayed put always keeps its cell. Other claims on the same cell are settled
+ * by a priority drawn from the run seed, the step and the claimant's starting cell;
+ * a losing actor goes back to where it started, and a losing newborn is never born.
+ * The new field is built in a second buffer, which then takes the place of the old
+ * one. If the step fails, the field keeps the contents it started with.
+ *
+ * @author asty
+ */
+public class BufferedStepEngine implements StepEngine {
+    // The buffer the next field is built in, made to match the field on first use.
+    private Field next;
+
+    @Override
+    public void step(int step, Field field, List<Actor> actors, List<Actor> newActors) {
+        if (next == null || next.getHeight() != field.getHeight() || next.getWidth() != field.getWidth()
+                || next.getDepth() != field.getDepth() || next.getLayout() != field.getLayout()) {
+            next = field.emptyCopy();
+        }
+        // The random stream of the acting actor, in the current run, rekeyed for each one.
+        long seed = Randomizer.getSeed();
+        Randomizer.Stream stream = Randomizer.newStream(seed, 0);
+        int count = actors.size();
+        long[] origins = new long[count];
+        List<Actor> born = new ArrayList<>();
+        List<Claim> bornClaims = new ArrayList<>();
+
+        field.beginBuffered();
+        try {
+            // The stream is bound once for all the acts, and only rekeyed between them.
+            Randomizer.Stream previous = Randomizer.bind(stream);
+            try {
+                for (int i = 0; i < count; i++) {
+                    Actor actor = actors.get(i);
+                    Location location = actor.getLocation();
+                    origins[i] = location == null ? Field.NO_CELL : field.getCell(location);
+                    stream.rekey((long) step << 40 ^ origins[i]);
+                    field.setClaimant(priority(seed, step, origins[i], 0), origins[i]);
+                    actor.act(born);
+                    // Young of a parent that dies in its own act are still born; young of a
+                    // parent killed by another are not, see below.
+                    Actor parent = actor.isActive() ? actor : null;
+                    for (int b = 0; b < born.size(); b++) {
+                        bornClaims.add(new Claim(born.get(b), parent, Field.NO_CELL,
+                                                 priority(seed, step, origins[i], b + 1)));
+                    }
+                    born.clear();
+                }
+            } finally {
+                Randomizer.bind(previous);
+            }
+            field.runDeferred();
+
+            List<Claim> claims = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Actor actor = actors.get(i);
+                if (actor.isActive() && actor.getLocation() != null) {
+                    claims.add(new Claim(actor, null, origins[i], priority(seed, step, origins[i], 0)));
+                }
+            }
+            for (Claim claim : bornClaims) {
+                if (claim.actor.isActive() && claim.actor.getLocation() != null
+                        && (claim.parent == null || claim.parent.isActive())) {
+                    claims.add(claim);
+                }
+            }
+            settle(field, claims);
+
+            next.clear();
+            for (Claim claim : claims) {
+                if (claim.placed) {
+                    next.place(claim.actor, claim.actor.getLocation());
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            // The buffer may be half built, so it is dropped rather than swapped in.
+            field.abortBuffered();
+            next = null;
+            throw e;
+        }
+        field.endBuffered(next);
+
+        // Survivors keep their order, then come the newborn, in the order of their parents.
+        List<Actor> survivors = new ArrayList<>(count);
+        for (Actor actor : actors) {
+            if (actor.isActive()) {
+                survivors.add(actor);
+            } else {
+                field.getOrganismPool().release(actor);
+            }
+        }
+        for (Claim claim : bornClaims) {
+            if (claim.placed) {
+                newActors.add(claim.actor);
+            }
+        }
+        actors.clear();
+        actors.addAll(survivors);
+        actors.addAll(newActors);
+    }
+
+    /**
+     * Give every cell to one of the actors that claim it. Losing actors go back to
+     * their starting cell, which nobody else can take from them; losing newborns
+     * are left out. The claims that win are marked placed.
+     */
+    private static void settle(Field field, List<Claim> claims) {
+        Map<Long, Claim> holders = new HashMap<>(claims.size() * 2);
+        List<Claim> pending = new ArrayList<>(claims);
+        while (!pending.isEmpty()) {
+            Claim claim = pending.remove(pending.size() - 1);
+            long cell = field.getCell(claim.actor.getLocation());
+            Claim holder = holders.get(cell);
+            Claim loser = claim;
+            if (holder == null || claim.beats(holder, cell)) {
+                holders.put(cell, claim);
+                claim.placed = true;
+                loser = holder;
+            }
+            if (loser != null) {
+                loser.placed = false;
+                if (loser.origin != Field.NO_CELL) {
+                    // The field is frozen, so this only tells the actor where it is.
+                    loser.actor.setLocation(field.getLocation(loser.origin));
+                    pending.add(loser);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The priority of a claim, drawn from the run seed, the step and the claimant.
+     */
+    private static long priority(long seed, int step, long origin, int birth) {
+        return Randomizer.mix(Randomizer.mix(seed ^ Randomizer.mix((long) step << 40 ^ origin)) + birth);
+    }
+
+    /**
+     * An actor's claim on the cell it ended the step in.
+     */
+    private static class Claim {
+        final Actor actor;
+        // The parent of a newborn that was alive after its act, otherwise null.
+        final Actor parent;
+        // The cell the actor started in, or NO_CELL for a newborn.
+        final long origin;
+        final long priority;
+        // Whether the claim currently holds its cell.
+        boolean placed;
+
+        Claim(Actor actor, Actor parent, long origin, long priority) {
+            this.actor = actor;
+            this.parent = parent;
+            this.origin = origin;
+            this.priority = priority;
+        }
+
+        /**
+         * @return true if this claim wins the cell from the holder.
+         */
+        boolean beats(Claim holder, long cell) {
+            if (holder.origin == cell) {
+                return false;
+            }
+            if (origin == cell) {
+                return true;
+            }
+            return priority > holder.priority || priority == holder.priority && origin > holder.origin;
+        }
+    }
+}
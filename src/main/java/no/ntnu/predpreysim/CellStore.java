@@ -0,0 +1,50 @@
+package no.ntnu.predpreysim;
+
+/**
+ * Where a field keeps the actor of each cell, and the shared location of each cell.
+ * Cells are addressed by the cell index of the field's layout.
+ *
+ * @author asty
+ */
+interface CellStore {
+    /**
+     * Return the actor in a cell.
+     *
+     * @param cell The cell index.
+     * @return The actor, or null if the cell is empty.
+     */
+    Object get(long cell);
+
+    /**
+     * Put an actor, or nothing, in a cell.
+     *
+     * @param cell  The cell index.
+     * @param actor The actor, or null to empty the cell.
+     */
+    void set(long cell, Object actor);
+
+    /**
+     * Return the shared location of a cell, creating it if needed.
+     *
+     * @param cell   The cell index.
+     * @param row    The row of the cell.
+     * @param col    The column of the cell.
+     * @param zindex The layer of the cell.
+     * @return The location of the cell.
+     */
+    Location location(long cell, int row, int col, int zindex);
+
+    /**
+     * Empty every cell.
+     */
+    void clear();
+
+    /**
+     * Tell whether actors in different tiles of a {@link ParallelStepEngine} may
+     * change the store at the same time. Tiles are aligned to 64 positions and never
+     * touch the same 64 x 64 block at once.
+     *
+     * @return true if tiles may be changed from several threads.
+     */
+    boolean isTileParallel();
+}
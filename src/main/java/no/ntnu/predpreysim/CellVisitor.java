@@ -0,0 +1,19 @@
+package no.ntnu.predpreysim;
+
+/**
+ * A callback for walking over cells of a field without building a list of locations.
+ * Implementations that do not capture any state can be shared, so a walk with them
+ * allocates nothing.
+ *
+ * @author asty
+ */
+public interface CellVisitor {
+    /**
+     * Visit one cell of the field.
+     *
+     * @param field The field being walked.
+     * @param cell  The index of the visited cell.
+     * @return true to stop the walk at this cell, false to carry on.
+     */
+    boolean visit(Field field, long cell);
+}
@@ -0,0 +1,433 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Actor;
+import no.ntnu.predpreysim.actor.ActorState;
+import no.ntnu.predpreysim.actor.SpeciesParameters;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of a simulation between two steps, written to and read from a
+ * channel in a compact binary form. A checkpoint holds the step, the shape
+ * and parameters of the field, every active actor in list order with its species,
+ * location, age and food level or size, and the state of the random generator
+ * the simulation draws from. A simulation resumed from it goes on exactly as
+ * the saved one would have.
+ * <p>
+ * The format is a header with a magic number and a version, then the sections
+ * in the order above, all numbers big-endian. Species are stored once, by
+ * class name, and referred to by their position in that table. An actor is
+ * normally in the cell of its location; one that has been pushed out of it by
+ * another and is still active is saved with the complement of its species
+ * index, so the field is rebuilt from the actors alone, without a pass over
+ * its cells.
+ *
+ * @author asty
+ */
+final class Checkpoint {
+    // "PPSC", the first bytes of every checkpoint.
+    private static final int MAGIC = 0x50505343;
+    // The version of the format.
+    private static final int VERSION = 2;
+    // The size of the buffer between the channel and the encoder.
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // The step the simulation had taken.
+    final int step;
+    // The field, with the actors in their cells.
+    final Field field;
+    // The actors, in list order.
+    final List<Actor> actors;
+
+    private Checkpoint(int step, Field field, List<Actor> actors) {
+        this.step = step;
+        this.field = field;
+        this.actors = actors;
+    }
+
+    /**
+     * Write the state of a simulation, and the state of the random generator
+     * the current thread draws from.
+     *
+     * @param step    The step the simulation has taken.
+     * @param field   The field.
+     * @param actors  The actors; the active ones must all be in the field, and
+     *                every actor in the field must be among them.
+     * @param channel Where to write.
+     * @throws IOException If writing fails.
+     */
+    static void write(int step, Field field, List<Actor> actors, WritableByteChannel channel) throws IOException {
+        Output out = new Output(channel);
+        out.ensure(4 * 6);
+        out.buffer.putInt(MAGIC).putInt(VERSION).putInt(step);
+        out.buffer.putInt(field.getHeight()).putInt(field.getWidth()).putInt(field.getDepth());
+        out.putString(field.getLayout().name());
+        out.putString(field.getStorage().name());
+        writeParameters(field.getParameters(), out);
+
+        // The species table, and each actor by its position in it. Actors that
+        // died since they acted are left out; the next step would drop them
+        // without their drawing any random numbers.
+        Map<Class<?>, Integer> species = new HashMap<>();
+        List<Class<?>> types = new ArrayList<>();
+        int active = 0;
+        for (Actor actor : actors) {
+            if (!actor.isActive()) {
+                continue;
+            }
+            active++;
+            if (!species.containsKey(actor.getClass())) {
+                species.put(actor.getClass(), types.size());
+                types.add(actor.getClass());
+            }
+        }
+        out.ensure(4);
+        out.buffer.putInt(types.size());
+        for (Class<?> type : types) {
+            out.putString(type.getName());
+        }
+        out.ensure(4);
+        out.buffer.putInt(active);
+        for (Actor actor : actors) {
+            if (!actor.isActive()) {
+                continue;
+            }
+            Location location = actor.getLocation();
+            if (location == null) {
+                throw new IllegalStateException("Cannot save " + actor.getClass().getSimpleName()
+                        + " outside the field");
+            }
+            int type = species.get(actor.getClass());
+            long cell = field.getCell(location);
+            out.ensure(2 + 4 + 4 + 8);
+            out.buffer.putShort((short) (field.getObjectAt(cell) == actor ? type : ~type));
+            out.buffer.putInt(ActorState.getAge(actor));
+            out.buffer.putInt(ActorState.getState(actor));
+            out.buffer.putLong(cell);
+        }
+
+        int size = Randomizer.getStateSize();
+        ByteBuffer random = ByteBuffer.allocate(size);
+        Randomizer.writeState(random);
+        out.ensure(4 + size);
+        out.buffer.putInt(size).put(random.array(), 0, random.position());
+        out.flush();
+    }
+
+    /**
+     * Read the state of a simulation. The current thread draws on from the
+     * saved state of the random generator.
+     *
+     * @param channel Where to read.
+     * @return The step, field and actors.
+     * @throws IOException If reading fails or the channel holds no checkpoint,
+     *                     or one that is cut short or corrupt.
+     */
+    static Checkpoint read(ReadableByteChannel channel) throws IOException {
+        Input in = new Input(channel);
+        in.ensure(4 * 6);
+        if (in.buffer.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint");
+        }
+        int version = in.buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        int step = in.buffer.getInt();
+        int height = in.buffer.getInt();
+        int width = in.buffer.getInt();
+        int depth = in.buffer.getInt();
+        FieldLayout layout;
+        FieldStorage storage;
+        try {
+            layout = FieldLayout.valueOf(in.getString());
+            storage = FieldStorage.valueOf(in.getString());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown field layout or storage", e);
+        }
+        Field field;
+        try {
+            field = new Field(height, width, depth, layout, storage);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt checkpoint: bad field shape", e);
+        }
+        field.setParameters(readParameters(in));
+
+        in.ensure(4);
+        int typeCount = in.buffer.getInt();
+        if (typeCount < 0 || typeCount > Short.MAX_VALUE + 1) {
+            throw new IOException("Corrupt checkpoint: " + typeCount + " species");
+        }
+        Class<?>[] types = new Class<?>[typeCount];
+        for (int t = 0; t < types.length; t++) {
+            types[t] = classNamed(in.getString());
+        }
+        in.ensure(4);
+        int count = in.buffer.getInt();
+        if (count < 0) {
+            throw new IOException("Corrupt checkpoint: " + count + " actors");
+        }
+        List<Actor> actors = new ActorList();
+        BitSet displaced = new BitSet();
+        for (int i = 0; i < count; i++) {
+            in.ensure(2 + 4 + 4 + 8);
+            int type = in.buffer.getShort();
+            if (type < 0) {
+                type = ~type;
+                displaced.set(i);
+            }
+            int age = in.buffer.getInt();
+            int state = in.buffer.getInt();
+            long cell = in.buffer.getLong();
+            if (type < 0 || type >= types.length || !field.isCell(cell)) {
+                throw new IOException("Corrupt checkpoint: actor " + i);
+            }
+            try {
+                actors.add(ActorState.restore(types[type], field, field.getLocation(cell), age, state));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt checkpoint: actor " + i, e);
+            }
+        }
+
+        // The actors placed themselves in list order, so a displaced actor may have
+        // been placed over the actor that pushed it out, or left in a cell it had lost.
+        for (int i = displaced.nextSetBit(0); i >= 0; i = displaced.nextSetBit(i + 1)) {
+            Location location = actors.get(i).getLocation();
+            if (field.getObjectAt(location) == actors.get(i)) {
+                field.clear(location);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            Actor actor = actors.get(i);
+            if (!displaced.get(i) && field.getObjectAt(actor.getLocation()) != actor) {
+                field.place(actor, actor.getLocation());
+            }
+        }
+
+        in.ensure(4);
+        int size = in.buffer.getInt();
+        if (size < 0) {
+            throw new IOException("Corrupt checkpoint: random state of " + size + " bytes");
+        }
+        in.ensure(size);
+        ByteBuffer random = in.buffer.slice();
+        random.limit(size);
+        readRandomState(random);
+        in.buffer.position(in.buffer.position() + size);
+        return new Checkpoint(step, field, actors);
+    }
+
+    /**
+     * Write the parameters of every species that has any. World images store them the same way.
+     */
+    static void writeParameters(SimulationParameters parameters, Output out) throws IOException {
+        List<Class<?>> types = new ArrayList<>();
+        for (int id = 0; id < Species.count(); id++) {
+            Class<?> type = Species.classOf(id);
+            if (parameters.find(type) != null || parameters.getCreationProbability(type) != 0) {
+                types.add(type);
+            }
+        }
+        out.ensure(4);
+        out.buffer.putInt(types.size());
+        for (Class<?> type : types) {
+            out.putString(type.getName());
+            SpeciesParameters species = parameters.find(type);
+            out.ensure(1 + 6 * 4 + 2 * 8);
+            out.buffer.put((byte) (species == null ? 0 : 1));
+            if (species != null) {
+                out.buffer.putInt(species.getBreedingAge());
+                out.buffer.putInt(species.getMaxAge());
+                out.buffer.putDouble(species.getBreedingProbability());
+                out.buffer.putInt(species.getMaxLitterSize());
+                out.buffer.putInt(species.getFoodFactor());
+                out.buffer.putInt(species.getFoodValue());
+                out.buffer.putInt(species.getMaxFoodValue());
+            }
+            out.buffer.putDouble(parameters.getCreationProbability(type));
+        }
+    }
+
+    /**
+     * Read parameters written by writeParameters.
+     */
+    static SimulationParameters readParameters(Input in) throws IOException {
+        SimulationParameters parameters = new SimulationParameters();
+        in.ensure(4);
+        int count = in.buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            Class<?> type = classNamed(in.getString());
+            in.ensure(1);
+            if (in.buffer.get() != 0) {
+                in.ensure(6 * 4 + 8);
+                int breedingAge = in.buffer.getInt();
+                int maxAge = in.buffer.getInt();
+                double breedingProbability = in.buffer.getDouble();
+                int maxLitterSize = in.buffer.getInt();
+                int foodFactor = in.buffer.getInt();
+                int foodValue = in.buffer.getInt();
+                int maxFoodValue = in.buffer.getInt();
+                parameters.set(type, new SpeciesParameters(breedingAge, maxAge, breedingProbability,
+                        maxLitterSize, foodFactor, foodValue, maxFoodValue));
+            }
+            in.ensure(8);
+            parameters.setCreationProbability(type, in.buffer.getDouble());
+        }
+        return parameters;
+    }
+
+    /**
+     * Make the current thread draw on from a saved state of the random
+     * generator, see {@link Randomizer#readState}.
+     *
+     * @throws IOException If the state is cut short or corrupt.
+     */
+    static void readRandomState(ByteBuffer random) throws IOException {
+        try {
+            Randomizer.readState(random);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException("Corrupt random state", e);
+        }
+    }
+
+    /**
+     * Look up a species by name. The class is not initialised, so a name read
+     * from a file runs no code unless it names a kind of actor.
+     *
+     * @return The species class of the given name.
+     * @throws IOException If there is no such class, or it is not a kind of actor.
+     */
+    static Class<?> classNamed(String name) throws IOException {
+        Class<?> type;
+        try {
+            type = Class.forName(name, false, Checkpoint.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown species " + name, e);
+        }
+        if (!Actor.class.isAssignableFrom(type)) {
+            throw new IOException("Not a species: " + name);
+        }
+        return type;
+    }
+
+    /**
+     * Encodes into a buffer that is written to the channel whenever it fills up.
+     */
+    static class Output {
+        private final WritableByteChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Make room for the given number of bytes, writing out what is buffered if need be.
+         */
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.remaining() < bytes) {
+                    throw new IOException("Record of " + bytes + " bytes too large for a checkpoint");
+                }
+            }
+        }
+
+        /**
+         * Copy the remaining bytes of a buffer, however many there are.
+         */
+        void put(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(source.remaining(), buffer.remaining());
+                ByteBuffer part = source.duplicate();
+                part.limit(part.position() + length);
+                buffer.put(part);
+                source.position(source.position() + length);
+            }
+        }
+
+        void putString(String text) throws IOException {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length);
+            buffer.putInt(bytes.length).put(bytes);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Decodes from a buffer that is refilled from the channel as it is used up.
+     */
+    static class Input {
+        private final ReadableByteChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Input(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        /**
+         * Make sure the given number of bytes can be read, reading more if need be.
+         */
+        void ensure(int bytes) throws IOException {
+            if (bytes > buffer.capacity()) {
+                throw new IOException("Record of " + bytes + " bytes too large for a checkpoint");
+            }
+            if (buffer.remaining() < bytes) {
+                buffer.compact();
+                while (buffer.position() < bytes) {
+                    if (channel.read(buffer) < 0) {
+                        throw new EOFException("Checkpoint ends early");
+                    }
+                }
+                buffer.flip();
+            }
+        }
+
+        /**
+         * Read bytes to fill an array, however large it is.
+         */
+        void get(byte[] target) throws IOException {
+            int done = 0;
+            while (done < target.length) {
+                ensure(1);
+                int length = Math.min(target.length - done, buffer.remaining());
+                buffer.get(target, done, length);
+                done += length;
+            }
+        }
+
+        String getString() throws IOException {
+            ensure(4);
+            int length = buffer.getInt();
+            if (length < 0) {
+                throw new IOException("Corrupt checkpoint");
+            }
+            ensure(length);
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,794 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Actor;
+import no.ntnu.predpreysim.actor.ActorState;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A chain of checkpoints of one simulation, appended to a single file. The
+ * first entry holds the whole state; every later entry only the tiles of the
+ * field that changed since the entry before it, with the step and the state of
+ * the random generator. Restoring replays the chain, keeping the latest
+ * version of each tile, and compacting folds the chain into a single entry.
+ * <p>
+ * The tiles are those of {@link Field#trackChanges}: the field marks a tile
+ * when an actor is placed in or cleared from one of its cells, and organisms
+ * mark their tile when their food level or size changes. Only marked tiles are
+ * encoded, and a marked tile is only saved if it differs from the version in
+ * the chain by a 64-bit hash, as when an animal leaves and another takes its
+ * place. An age is saved as the step of birth, which stays the same as the
+ * actor grows older, so ageing marks nothing.
+ * <p>
+ * An actor can be pushed out of its cell by another and still be active; it
+ * is saved in the tile of its location, with the complement of its species
+ * index, ahead of the actors in their cells.
+ * <p>
+ * The order of the list of actors decides how a run goes on, so every
+ * organism carries a key that orders it. Keys are handed out in list order,
+ * newcomers after all others, and hold as long as the engine keeps survivors
+ * in order, as all the engines do. If the list has been reordered, the keys
+ * are handed out again, which changes every tile that holds an actor.
+ * <p>
+ * Each entry has a header, its contents and a CRC-32 of them. The header is
+ * written last, so an entry cut short by a crash is never taken for a whole
+ * one; it is dropped when the chain is restored. All numbers are big-endian.
+ *
+ * @author asty
+ */
+final class CheckpointChain {
+    // "PPCC", the first bytes of every chain.
+    private static final int MAGIC = 0x50504343;
+    // The version of the format.
+    private static final int VERSION = 1;
+    // "PPCE", the first bytes of every entry.
+    private static final int ENTRY_MAGIC = 0x50504345;
+    // The kinds of entry: the whole state, or the tiles that changed.
+    private static final int FULL = 0;
+    private static final int DELTA = 1;
+    // The size of the header of the file, and of the header and trailer of an entry.
+    private static final int HEADER_SIZE = 4 + 4;
+    private static final int ENTRY_HEADER_SIZE = 4 + 4 + 8;
+    private static final int ENTRY_TRAILER_SIZE = 4;
+    // The size of an actor record: cell, key, step of birth, food level or size, species.
+    private static final int RECORD_SIZE = 8 + 8 + 4 + 4 + 2;
+    // The hash of an empty tile.
+    private static final long EMPTY = 0;
+
+    // The file the chain is kept in.
+    private final Path file;
+    // The shape of the field the chain is of.
+    private int height, width, depth;
+    private FieldLayout layout;
+    // The field the last entry was taken from. Any other field has all its tiles checked.
+    private Field field;
+    // The hash of each tile as the chain holds it, or null before the first entry.
+    private long[] hashes;
+    // The species that occur in the chain, numbered in order of appearance.
+    private final Map<Class<?>, Integer> species = new HashMap<>();
+    private final List<Class<?>> types = new ArrayList<>();
+    // The active actors pushed out of their cells by others, by tile.
+    private final Map<Integer, List<Actor>> displaced = new HashMap<>();
+    // The key the next organism without one gets.
+    private long nextKey = 1;
+    // The tile being encoded.
+    private ByteBuffer scratch = ByteBuffer.allocate(1 << 12);
+    // The step and actors found by open, until they are taken.
+    private int step;
+    private List<Actor> restored;
+
+    /**
+     * Start a chain in a file. Nothing is written until the first append, which
+     * replaces whatever the file holds.
+     *
+     * @param file The file.
+     */
+    CheckpointChain(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return true if the chain is kept in the given file.
+     */
+    boolean isIn(Path file) {
+        return this.file.toAbsolutePath().normalize().equals(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Append a checkpoint of a simulation, and the state of the random
+     * generator the current thread draws from. Actors that died since they
+     * acted are left out.
+     *
+     * @param step   The step the simulation has taken.
+     * @param field  The field, of the same shape as the one the chain started with.
+     * @param actors The actors; the active ones must all be organisms in the
+     *               field, and the field must hold no others.
+     * @throws IOException If writing fails.
+     */
+    void append(int step, Field field, List<Actor> actors) throws IOException {
+        boolean full = hashes == null;
+        if (full) {
+            height = field.getHeight();
+            width = field.getWidth();
+            depth = field.getDepth();
+            layout = field.getLayout();
+        } else if (field.getHeight() != height || field.getWidth() != width || field.getDepth() != depth
+                || field.getLayout() != layout) {
+            throw new IllegalArgumentException("The field does not match the checkpoint chain");
+        }
+        if (field != this.field) {
+            field.trackChanges();
+            this.field = field;
+        }
+        order(field, actors);
+        byte[] random = randomState();
+        long[] updated = full ? new long[field.getTileCount()] : hashes.clone();
+        Section body = out -> {
+            if (full) {
+                writeShape(out, height, width, depth, layout, field.getStorage(), field.getParameters());
+            }
+            writeHead(out, step, types);
+            writeTiles(out, step, field, updated);
+            writeTail(out, random);
+        };
+        try {
+            if (full) {
+                writeFresh(file, body);
+            } else {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    long start = channel.size();
+                    try {
+                        writeEntry(channel, start, DELTA, body);
+                    } catch (IOException | RuntimeException e) {
+                        // Cut off the part written, or the next entry would go after it and never be read.
+                        try {
+                            channel.truncate(start);
+                        } catch (IOException truncation) {
+                            e.addSuppressed(truncation);
+                        }
+                        throw e;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // The changes taken are not in the chain; look at every tile next time.
+            field.trackChanges();
+            throw e;
+        }
+        hashes = updated;
+    }
+
+    /**
+     * Restore the last checkpoint of a chain. The current thread draws on from
+     * the saved state of the random generator. Anything after the last whole
+     * entry is cut off the file, and the chain can be appended to.
+     *
+     * @param file The file of the chain.
+     * @return The chain, which gives the step, field and actors.
+     * @throws IOException If reading fails or the file holds no checkpoint chain.
+     */
+    static CheckpointChain open(Path file) throws IOException {
+        Replay replay;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            replay = replay(channel);
+            channel.truncate(replay.end);
+        }
+        Field field;
+        try {
+            field = new Field(replay.height, replay.width, replay.depth, replay.layout, replay.storage);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt checkpoint chain: bad field shape", e);
+        }
+        field.setParameters(replay.parameters);
+
+        CheckpointChain chain = new CheckpointChain(file);
+        chain.height = replay.height;
+        chain.width = replay.width;
+        chain.depth = replay.depth;
+        chain.layout = replay.layout;
+        for (Class<?> type : replay.types) {
+            chain.species.put(type, chain.types.size());
+            chain.types.add(type);
+        }
+        chain.hashes = new long[replay.tiles.length];
+        List<Actor> actors = new ActorList();
+        for (int tile = 0; tile < replay.tiles.length; tile++) {
+            byte[] block = replay.tiles[tile];
+            if (block == null) {
+                continue;
+            }
+            chain.hashes[tile] = hash(ByteBuffer.wrap(block));
+            ByteBuffer records = ByteBuffer.wrap(block);
+            List<Actor> pushed = new ArrayList<>();
+            while (records.hasRemaining()) {
+                long cell = records.getLong();
+                long key = records.getLong();
+                int birth = records.getInt();
+                int state = records.getInt();
+                int type = records.getShort();
+                boolean displaced = type < 0;
+                if (displaced) {
+                    type = ~type;
+                }
+                if (!field.isCell(cell) || type < 0 || type >= replay.types.length) {
+                    throw new IOException("Corrupt checkpoint chain: tile " + tile);
+                }
+                Actor actor = ActorState.restore(replay.types[type], field, field.getLocation(cell),
+                        replay.step - birth, state);
+                ActorState.setKey(actor, key);
+                actors.add(actor);
+                chain.nextKey = Math.max(chain.nextKey, key + 1);
+                if (displaced) {
+                    pushed.add(actor);
+                }
+            }
+            // The displaced actors came first, so any actor in their cell has been placed over them.
+            for (Actor actor : pushed) {
+                if (field.getObjectAt(actor.getLocation()) == actor) {
+                    field.clear(actor.getLocation());
+                }
+            }
+        }
+        actors.sort(Comparator.comparingLong(ActorState::getKey));
+        chain.field = field;
+        field.trackChanges();
+        chain.step = replay.step;
+        chain.restored = actors;
+        Checkpoint.readRandomState(ByteBuffer.wrap(replay.random));
+        return chain;
+    }
+
+    /**
+     * Fold a chain into a single entry holding its last checkpoint. The chain
+     * is written next to the file and moved over it once complete.
+     *
+     * @param file The file of the chain.
+     * @throws IOException If reading or writing fails, or the file holds no checkpoint chain.
+     */
+    static void compact(Path file) throws IOException {
+        Replay replay;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            replay = replay(channel);
+        }
+        writeFresh(file, out -> {
+            writeShape(out, replay.height, replay.width, replay.depth, replay.layout, replay.storage,
+                    replay.parameters);
+            writeHead(out, replay.step, Arrays.asList(replay.types));
+            for (int tile = 0; tile < replay.tiles.length; tile++) {
+                if (replay.tiles[tile] != null) {
+                    writeBlock(out, tile, ByteBuffer.wrap(replay.tiles[tile]));
+                }
+            }
+            out.ensure(4);
+            out.buffer.putInt(-1);
+            writeTail(out, replay.random);
+        });
+    }
+
+    /**
+     * @return The step of the checkpoint restored by open.
+     */
+    int getStep() {
+        return step;
+    }
+
+    /**
+     * @return The field of the checkpoint restored by open, or the field of the last entry.
+     */
+    Field getField() {
+        return field;
+    }
+
+    /**
+     * @return The actors of the checkpoint restored by open, in list order. The
+     * chain lets go of them.
+     */
+    List<Actor> takeActors() {
+        List<Actor> actors = restored;
+        restored = null;
+        return actors;
+    }
+
+    /**
+     * Check that the actors can be saved, and give them keys that follow the
+     * order of the list, handing them all out again if the list has been reordered.
+     */
+    private void order(Field field, List<Actor> actors) {
+        displaced.clear();
+        int count = 0;
+        long last = 0;
+        boolean ordered = true;
+        for (Actor actor : actors) {
+            if (!actor.isActive()) {
+                continue;
+            }
+            Location location = actor.getLocation();
+            if (location == null) {
+                throw new IllegalStateException("Cannot save " + actor.getClass().getSimpleName()
+                        + " outside the field");
+            }
+            if (field.getObjectAt(location) == actor) {
+                count++;
+            } else {
+                int tile = (location.getRow() >> Field.CHANGE_TILE_BITS) * field.getTilesWide()
+                        + (location.getCol() >> Field.CHANGE_TILE_BITS);
+                displaced.computeIfAbsent(tile, t -> new ArrayList<>()).add(actor);
+            }
+            if (!species.containsKey(actor.getClass())) {
+                species.put(actor.getClass(), types.size());
+                types.add(actor.getClass());
+            }
+            if (ordered) {
+                long key = ActorState.getKey(actor);
+                if (key == 0) {
+                    key = nextKey++;
+                    ActorState.setKey(actor, key);
+                    field.markChanged(location);
+                } else if (key <= last) {
+                    ordered = false;
+                }
+                last = key;
+            }
+        }
+        long occupied = 0;
+        for (int id = 0; id < Species.count(); id++) {
+            occupied += field.getCount(id);
+        }
+        if (occupied != count) {
+            throw new IllegalStateException("Cannot save a field holding actors outside the list of actors");
+        }
+        if (!ordered) {
+            nextKey = 1;
+            for (Actor actor : actors) {
+                if (actor.isActive()) {
+                    ActorState.setKey(actor, nextKey++);
+                    field.markChanged(actor.getLocation());
+                }
+            }
+        }
+    }
+
+    /**
+     * Write every changed tile that differs from the version in the chain, and update its hash.
+     */
+    private void writeTiles(Checkpoint.Output out, int step, Field field, long[] updated) throws IOException {
+        for (int tile = 0; tile < updated.length; tile++) {
+            if (!field.takeChange(tile) && !displaced.containsKey(tile)) {
+                continue;
+            }
+            encode(step, field, tile);
+            long hash = hash(scratch);
+            if (hash != updated[tile]) {
+                writeBlock(out, tile, scratch);
+                updated[tile] = hash;
+            }
+        }
+        out.ensure(4);
+        out.buffer.putInt(-1);
+    }
+
+    /**
+     * Encode the actors of a tile into the scratch buffer, in row, column, layer order.
+     */
+    private void encode(int step, Field field, int tile) {
+        int tilesWide = field.getTilesWide();
+        int top = tile / tilesWide << Field.CHANGE_TILE_BITS;
+        int left = tile % tilesWide << Field.CHANGE_TILE_BITS;
+        int bottom = Math.min(top + (1 << Field.CHANGE_TILE_BITS), height);
+        int right = Math.min(left + (1 << Field.CHANGE_TILE_BITS), width);
+        scratch.clear();
+        for (Actor actor : displaced.getOrDefault(tile, Collections.emptyList())) {
+            long cell = field.getCell(actor.getLocation());
+            put(step, cell, actor, ~species.get(actor.getClass()));
+        }
+        for (int row = top; row < bottom; row++) {
+            for (int col = left; col < right; col++) {
+                for (int zindex = 0; zindex < depth; zindex++) {
+                    long cell = field.getCell(row, col, zindex);
+                    Actor actor = (Actor) field.getObjectAt(cell);
+                    if (actor != null) {
+                        put(step, cell, actor, species.get(actor.getClass()));
+                    }
+                }
+            }
+        }
+        scratch.flip();
+    }
+
+    /**
+     * Add the record of an actor to the scratch buffer.
+     */
+    private void put(int step, long cell, Actor actor, int type) {
+        if (scratch.remaining() < RECORD_SIZE) {
+            ByteBuffer grown = ByteBuffer.allocate(scratch.capacity() * 2);
+            scratch.flip();
+            scratch = grown.put(scratch);
+        }
+        scratch.putLong(cell).putLong(ActorState.getKey(actor));
+        scratch.putInt(step - ActorState.getAge(actor)).putInt(ActorState.getState(actor));
+        scratch.putShort((short) type);
+    }
+
+    /**
+     * @return A 64-bit hash of the remaining bytes of a buffer, EMPTY for none.
+     */
+    private static long hash(ByteBuffer bytes) {
+        int end = bytes.limit();
+        if (end == bytes.position()) {
+            return EMPTY;
+        }
+        long hash = end - bytes.position();
+        int i = bytes.position();
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            hash = Randomizer.mix(hash ^ bytes.getLong(i));
+        }
+        long last = 0;
+        for (; i < end; i++) {
+            last = last << 8 | bytes.get(i) & 0xFF;
+        }
+        hash = Randomizer.mix(hash ^ last);
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /**
+     * @return The state of the random generator the current thread draws from.
+     */
+    private static byte[] randomState() {
+        ByteBuffer random = ByteBuffer.allocate(Randomizer.getStateSize());
+        Randomizer.writeState(random);
+        return Arrays.copyOf(random.array(), random.position());
+    }
+
+    private static void writeShape(Checkpoint.Output out, int height, int width, int depth, FieldLayout layout,
+                                   FieldStorage storage, SimulationParameters parameters) throws IOException {
+        out.ensure(4 * 3);
+        out.buffer.putInt(height).putInt(width).putInt(depth);
+        out.putString(layout.name());
+        out.putString(storage.name());
+        Checkpoint.writeParameters(parameters, out);
+    }
+
+    private static void writeHead(Checkpoint.Output out, int step, List<Class<?>> types) throws IOException {
+        out.ensure(4 + 4);
+        out.buffer.putInt(step).putInt(types.size());
+        for (Class<?> type : types) {
+            out.putString(type.getName());
+        }
+    }
+
+    private static void writeBlock(Checkpoint.Output out, int tile, ByteBuffer records) throws IOException {
+        out.ensure(4 + 4);
+        out.buffer.putInt(tile).putInt(records.remaining());
+        out.put(records.duplicate());
+    }
+
+    private static void writeTail(Checkpoint.Output out, byte[] random) throws IOException {
+        out.ensure(4);
+        out.buffer.putInt(random.length);
+        out.put(ByteBuffer.wrap(random));
+    }
+
+    /**
+     * Write a chain of one entry next to the file, and move it over the file once complete.
+     */
+    private static void writeFresh(Path file, Section body) throws IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(channel, header, 0);
+            writeEntry(channel, HEADER_SIZE, FULL, body);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Write an entry at the given position: the contents and their checksum,
+     * and, once those are on disk, the header.
+     */
+    private static void writeEntry(FileChannel channel, long start, int kind, Section body) throws IOException {
+        CRC32 crc = new CRC32();
+        channel.position(start + ENTRY_HEADER_SIZE);
+        Checkpoint.Output out = new Checkpoint.Output(new Checked(channel, crc));
+        body.write(out);
+        out.flush();
+        long length = channel.position() - start - ENTRY_HEADER_SIZE;
+        ByteBuffer trailer = ByteBuffer.allocate(ENTRY_TRAILER_SIZE);
+        trailer.putInt((int) crc.getValue()).flip();
+        writeFully(channel, trailer, start + ENTRY_HEADER_SIZE + length);
+        channel.force(false);
+        ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_SIZE);
+        header.putInt(ENTRY_MAGIC).putInt(kind).putLong(length).flip();
+        writeFully(channel, header, start);
+        channel.force(false);
+    }
+
+    /**
+     * Read the whole entries of a chain, keeping the latest version of each tile.
+     */
+    private static Replay replay(FileChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint chain");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint chain version " + version);
+        }
+        Replay replay = new Replay();
+        long position = HEADER_SIZE;
+        long size = channel.size();
+        while (position + ENTRY_HEADER_SIZE + ENTRY_TRAILER_SIZE <= size) {
+            ByteBuffer entryHeader = readFully(channel, position, ENTRY_HEADER_SIZE);
+            int magic = entryHeader.getInt();
+            int kind = entryHeader.getInt();
+            long length = entryHeader.getLong();
+            if (magic != ENTRY_MAGIC || (kind != FULL && kind != DELTA) || length < 0
+                    || length > size - position - ENTRY_HEADER_SIZE - ENTRY_TRAILER_SIZE) {
+                break;
+            }
+            if (kind == DELTA && replay.tiles == null) {
+                throw new IOException("Checkpoint chain does not start with a full checkpoint");
+            }
+            long start = position + ENTRY_HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            Bounded contents = new Bounded(channel, start, start + length, crc);
+            Replay entry = new Replay();
+            IOException failure = null;
+            try {
+                readEntry(new Checkpoint.Input(contents), kind, length, entry);
+            } catch (IOException e) {
+                failure = e;
+            }
+            contents.drain();
+            if ((int) crc.getValue() != readFully(channel, start + length, ENTRY_TRAILER_SIZE).getInt()) {
+                break;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            replay.apply(entry, kind);
+            position = start + length + ENTRY_TRAILER_SIZE;
+        }
+        if (replay.tiles == null) {
+            throw new IOException("No whole checkpoint in chain");
+        }
+        replay.end = position;
+        return replay;
+    }
+
+    /**
+     * Read the contents of an entry. The tiles are collected in order in the
+     * entry's pending lists. The contents are read before their checksum is
+     * checked, so no count in them may ask for more than the entry holds.
+     */
+    private static void readEntry(Checkpoint.Input in, int kind, long length, Replay entry) throws IOException {
+        if (kind == FULL) {
+            in.ensure(4 * 3);
+            entry.height = in.buffer.getInt();
+            entry.width = in.buffer.getInt();
+            entry.depth = in.buffer.getInt();
+            try {
+                entry.layout = FieldLayout.valueOf(in.getString());
+                entry.storage = FieldStorage.valueOf(in.getString());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown field layout or storage", e);
+            }
+            entry.parameters = Checkpoint.readParameters(in);
+        }
+        in.ensure(4 + 4);
+        entry.step = in.buffer.getInt();
+        int typeCount = in.buffer.getInt();
+        if (typeCount < 0 || typeCount > Short.MAX_VALUE + 1 || typeCount > length) {
+            throw new IOException("Corrupt checkpoint chain: " + typeCount + " species");
+        }
+        entry.types = new Class<?>[typeCount];
+        for (int t = 0; t < entry.types.length; t++) {
+            entry.types[t] = Checkpoint.classNamed(in.getString());
+        }
+        while (true) {
+            in.ensure(4);
+            int tile = in.buffer.getInt();
+            if (tile < 0) {
+                break;
+            }
+            in.ensure(4);
+            int bytes = in.buffer.getInt();
+            if (bytes < 0 || bytes > length || bytes % RECORD_SIZE != 0) {
+                throw new IOException("Corrupt checkpoint chain: tile " + tile);
+            }
+            byte[] block = new byte[bytes];
+            in.get(block);
+            entry.pendingTiles.add(tile);
+            entry.pendingBlocks.add(block);
+        }
+        in.ensure(4);
+        int size = in.buffer.getInt();
+        if (size < 0 || size > length) {
+            throw new IOException("Corrupt checkpoint chain: random state of " + size + " bytes");
+        }
+        entry.random = new byte[size];
+        in.get(entry.random);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Checkpoint chain ends early");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Writes the contents of an entry.
+     */
+    private interface Section {
+        void write(Checkpoint.Output out) throws IOException;
+    }
+
+    /**
+     * The state a chain holds after some of its entries, or the contents of one entry.
+     */
+    private static final class Replay {
+        // The shape and parameters of the field, from the last full entry.
+        int height, width, depth;
+        FieldLayout layout;
+        FieldStorage storage;
+        SimulationParameters parameters;
+        // The step, species table and random state of the last entry.
+        int step;
+        Class<?>[] types;
+        byte[] random;
+        // The latest records of each tile, or null for an empty tile.
+        byte[][] tiles;
+        // The tiles of a single entry, in the order read.
+        final List<Integer> pendingTiles = new ArrayList<>();
+        final List<byte[]> pendingBlocks = new ArrayList<>();
+        // Where the last whole entry ends.
+        long end;
+
+        /**
+         * Take in an entry read whole.
+         */
+        void apply(Replay entry, int kind) throws IOException {
+            if (kind == FULL) {
+                if (entry.height <= 0 || entry.width <= 0 || entry.depth <= 0) {
+                    throw new IOException("Corrupt checkpoint chain: bad field shape");
+                }
+                height = entry.height;
+                width = entry.width;
+                depth = entry.depth;
+                layout = entry.layout;
+                storage = entry.storage;
+                parameters = entry.parameters;
+                tiles = new byte[Field.tilesAcross(height) * Field.tilesAcross(width)][];
+            }
+            step = entry.step;
+            types = entry.types;
+            random = entry.random;
+            for (int i = 0; i < entry.pendingTiles.size(); i++) {
+                int tile = entry.pendingTiles.get(i);
+                if (tile >= tiles.length) {
+                    throw new IOException("Corrupt checkpoint chain: tile " + tile);
+                }
+                byte[] block = entry.pendingBlocks.get(i);
+                tiles[tile] = block.length == 0 ? null : block;
+            }
+        }
+    }
+
+    /**
+     * Passes writes on to a channel, and the bytes written on to a checksum.
+     */
+    private static final class Checked implements WritableByteChannel {
+        private final WritableByteChannel channel;
+        private final CRC32 crc;
+
+        Checked(WritableByteChannel channel, CRC32 crc) {
+            this.channel = channel;
+            this.crc = crc;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            ByteBuffer written = source.duplicate();
+            int count = channel.write(source);
+            written.limit(written.position() + count);
+            crc.update(written);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // The channel belongs to the caller.
+        }
+    }
+
+    /**
+     * Reads the contents of one entry from a file, and passes the bytes read on to a checksum.
+     */
+    private static final class Bounded implements ReadableByteChannel {
+        private final FileChannel channel;
+        private final CRC32 crc;
+        private final long end;
+        private long position;
+
+        Bounded(FileChannel channel, long start, long end, CRC32 crc) {
+            this.channel = channel;
+            this.crc = crc;
+            this.end = end;
+            position = start;
+        }
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            ByteBuffer part = target.duplicate();
+            part.limit(part.position() + (int) Math.min(part.remaining(), end - position));
+            int count = channel.read(part, position);
+            if (count < 0) {
+                return -1;
+            }
+            ByteBuffer read = target.duplicate();
+            read.limit(read.position() + count);
+            crc.update(read);
+            target.position(target.position() + count);
+            position += count;
+            return count;
+        }
+
+        /**
+         * Read what is left of the entry, so that the checksum covers all of it.
+         */
+        void drain() throws IOException {
+            ByteBuffer rest = ByteBuffer.allocate(1 << 16);
+            while (read(rest) > 0) {
+                rest.clear();
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // The channel belongs to the caller.
+        }
+    }
+}
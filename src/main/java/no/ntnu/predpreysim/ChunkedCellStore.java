@@ -0,0 +1,143 @@
+package no.ntnu.predpreysim;
+
+import java.util.Arrays;
+
+/**
+ * A cell store for large, mostly empty fields. The field is cut into tiles of
+ * TILE_SIZE x TILE_SIZE positions, all layers included. A tile is allocated when the
+ * first actor is placed in it and dropped when its last actor leaves.
+ * <p>
+ * It expects the cell index of {@link FieldLayout#CHUNKED}: the layer in the lowest
+ * bits, then the column, then the row, each in a power-of-two number of bits.
+ *
+ * @author asty
+ */
+class ChunkedCellStore implements CellStore {
+    // The number of bits of a row or column within a tile.
+    static final int TILE_BITS = 6;
+    // The height and width of a tile.
+    static final int TILE_SIZE = 1 << TILE_BITS;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    private final int depth;
+    // Where the column and row start in a cell index.
+    private final int colShift, rowShift;
+    // The masks of the column and layer in a cell index.
+    private final long colMask, zindexMask;
+    // The number of tiles across a row of tiles.
+    private final int tilesWide;
+    // The tiles, row of tiles by row of tiles. Missing tiles are empty.
+    private final Tile[] tiles;
+
+    /**
+     * Create an empty store.
+     *
+     * @param height   The height of the field.
+     * @param width    The width of the field.
+     * @param depth    The number of layers.
+     * @param colShift The position of the column in a cell index.
+     * @param rowShift The position of the row in a cell index.
+     */
+    ChunkedCellStore(int height, int width, int depth, int colShift, int rowShift) {
+        this.depth = depth;
+        this.colShift = colShift;
+        this.rowShift = rowShift;
+        colMask = (1L << (rowShift - colShift)) - 1;
+        zindexMask = (1L << colShift) - 1;
+        tilesWide = (width + TILE_MASK) >>> TILE_BITS;
+        long tiles = (long) ((height + TILE_MASK) >>> TILE_BITS) * tilesWide;
+        if (tiles > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Field too large to tile: " + height + "x" + width);
+        }
+        this.tiles = new Tile[(int) tiles];
+    }
+
+    @Override
+    public Object get(long cell) {
+        Tile tile = tiles[tileIndex(cell)];
+        return tile == null ? null : tile.cells[offset(cell)];
+    }
+
+    @Override
+    public void set(long cell, Object actor) {
+        int index = tileIndex(cell);
+        Tile tile = tiles[index];
+        if (tile == null) {
+            if (actor == null) {
+                return;
+            }
+            tile = new Tile(depth);
+            tiles[index] = tile;
+        }
+        int offset = offset(cell);
+        Object previous = tile.cells[offset];
+        tile.cells[offset] = actor;
+        if (previous == null && actor != null) {
+            tile.population++;
+        } else if (previous != null && actor == null && --tile.population == 0) {
+            tiles[index] = null;
+        }
+    }
+
+    @Override
+    public Location location(long cell, int row, int col, int zindex) {
+        Tile tile = tiles[tileIndex(cell)];
+        if (tile == null) {
+            // Not worth a tile: the caller is about to fill the cell or look elsewhere.
+            return new Location(row, col, zindex);
+        }
+        if (tile.locations == null) {
+            tile.locations = new Location[tile.cells.length];
+        }
+        int offset = offset(cell);
+        Location location = tile.locations[offset];
+        if (location == null) {
+            location = new Location(row, col, zindex);
+            tile.locations[offset] = location;
+        }
+        return location;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(tiles, null);
+    }
+
+    @Override
+    public boolean isTileParallel() {
+        return true;
+    }
+
+    /**
+     * @return The index of the tile holding a cell.
+     */
+    private int tileIndex(long cell) {
+        int row = (int) (cell >>> rowShift);
+        int col = (int) ((cell >>> colShift) & colMask);
+        return (row >>> TILE_BITS) * tilesWide + (col >>> TILE_BITS);
+    }
+
+    /**
+     * @return The position of a cell within its tile.
+     */
+    private int offset(long cell) {
+        int row = (int) (cell >>> rowShift) & TILE_MASK;
+        int col = (int) ((cell >>> colShift) & colMask) & TILE_MASK;
+        return ((row << TILE_BITS) | col) * depth + (int) (cell & zindexMask);
+    }
+
+    /**
+     * The cells of one tile, all layers interleaved.
+     */
+    private static class Tile {
+        final Object[] cells;
+        // The shared locations of the cells, created on first use.
+        Location[] locations;
+        // The number of cells with an actor.
+        int population;
+
+        Tile(int depth) {
+            cells = new Object[TILE_SIZE * TILE_SIZE * depth];
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package no.ntnu.predpreysim;
 
-import java.awt.Color;
-
 /**
  * Provide a counter for a participant in the simulation.
  * This includes an identifying string and a count of how
@@ -52,6 +50,15 @@ public class Counter
         count++;
     }
     
+    /**
+     * Increment the current count by the given amount.
+     * @param amount How much to add.
+     */
+    public void increment(int amount)
+    {
+        count += amount;
+    }
+
     /**
      * Reset the current count to zero.
      */
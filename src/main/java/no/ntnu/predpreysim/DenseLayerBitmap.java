@@ -0,0 +1,51 @@
+package no.ntnu.predpreysim;
+
+import java.util.Arrays;
+
+/**
+ * A layer bitmap kept in one array of words, row by row.
+ *
+ * @author asty
+ */
+class DenseLayerBitmap implements LayerBitmap {
+    // The number of words that make up one row.
+    private final int wordsPerRow;
+    // The bits, row by row.
+    private final long[] words;
+
+    /**
+     * Create an empty bitmap for a layer of the given size.
+     *
+     * @param height The number of rows.
+     * @param width  The number of columns.
+     */
+    DenseLayerBitmap(int height, int width) {
+        wordsPerRow = (width + 63) >>> 6;
+        words = new long[height * wordsPerRow];
+    }
+
+    @Override
+    public void set(int row, int col) {
+        words[row * wordsPerRow + (col >>> 6)] |= 1L << col;
+    }
+
+    @Override
+    public void clear(int row, int col) {
+        words[row * wordsPerRow + (col >>> 6)] &= ~(1L << col);
+    }
+
+    @Override
+    public boolean get(int row, int col) {
+        return (words[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    @Override
+    public long word(int row, int wordIndex) {
+        return words[row * wordsPerRow + wordIndex];
+    }
+
+    @Override
+    public void clearAll() {
+        Arrays.fill(words, 0);
+    }
+}
@@ -0,0 +1,83 @@
+package no.ntnu.predpreysim;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs many independent simulations of the same field at once, one per seed,
+ * and gathers statistics of their populations after every step.
+ * <p>
+ * Each run has a generator of its own, seeded with its seed and bound to the
+ * thread it runs on (see {@link Randomizer}), so runs do not share random
+ * numbers and a run gives the same result whichever thread it lands on. A run
+ * with seed 1 is the run a single simulator makes. Runs are headless and do
+ * not log, and they go on for all steps even when a species dies out.
+ *
+ * @author asty
+ */
+public class Ensemble {
+    // The size of the field.
+    private final int height;
+    private final int width;
+    private final int depth;
+    // The number of steps of each run.
+    private final int steps;
+    // The species whose populations are collected.
+    private Class<?>[] species = BatchRunner.DEFAULT_SPECIES;
+
+    /**
+     * Create an ensemble of simulations.
+     *
+     * @param height Height of the field.
+     * @param width  Width of the field.
+     * @param depth  Depth of the field.
+     * @param steps  The number of steps of each run.
+     */
+    public Ensemble(int height, int width, int depth, int steps) {
+        this.height = height;
+        this.width = width;
+        this.depth = depth;
+        this.steps = steps;
+    }
+
+    /**
+     * Choose the species whose populations are collected.
+     *
+     * @param species The classes of actor.
+     */
+    public void setSpecies(Class<?>... species) {
+        this.species = species.clone();
+    }
+
+    /**
+     * Run one simulation for each of a number of consecutive seeds, on as many
+     * threads as there are processors.
+     *
+     * @param firstSeed The seed of the first run.
+     * @param runs      The number of runs.
+     * @return The statistics of the runs.
+     */
+    public EnsembleResult run(long firstSeed, int runs) {
+        long[] seeds = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            seeds[run] = firstSeed + run;
+        }
+        return run(seeds, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Run one simulation for each seed.
+     *
+     * @param seeds   The seeds of the runs.
+     * @param threads The number of runs to make at once.
+     * @return The statistics of the runs.
+     */
+    public EnsembleResult run(long[] seeds, int threads) {
+        EnsembleResult result = new EnsembleResult(species, steps, seeds.length);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, seeds.length)));
+        BatchRunner.runAll(pool, seeds.length, run -> result.record(
+                BatchRunner.populations(seeds[run], () -> new Simulator(height, width, depth), species, steps)),
+                "an ensemble run");
+        return result;
+    }
+}
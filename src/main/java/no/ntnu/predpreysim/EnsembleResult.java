@@ -0,0 +1,224 @@
+package no.ntnu.predpreysim;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Statistics of the populations of the runs of an ensemble after every step:
+ * the mean, the variance and quantiles of each population at each step.
+ * <p>
+ * The populations of the runs are not kept. Each run is folded into running
+ * sums and a histogram per species and step as it finishes, so the result
+ * takes the same memory however many runs there are. A histogram has
+ * {@link #BINS} bins, each one count wide to begin with; when a population
+ * does not fit, the bins are merged in pairs and doubled in width. Quantiles
+ * are therefore exact while the populations of a step stay below BINS, and
+ * otherwise within one bin width of the truth. Neither the sums nor the
+ * histograms depend on the order the runs finish in.
+ *
+ * @author asty
+ */
+public class EnsembleResult {
+    // The number of bins of each histogram; a power of two.
+    static final int BINS = 128;
+
+    // The species whose populations are kept.
+    private final Class<?>[] species;
+    // The number of steps of each run.
+    private final int steps;
+    // The number of runs.
+    private final int runs;
+    // The number of runs folded in so far.
+    private int folded;
+    // The sum of the populations, and of their squares, by species and step.
+    private final long[][] sums;
+    private final double[][] squares;
+    // The width of the bins of each histogram, by species and step.
+    private final int[][] widths;
+    // The histograms, by species, then BINS bins for each step.
+    private final int[][] bins;
+
+    /**
+     * @param species The species whose populations are kept.
+     * @param steps   The number of steps of each run.
+     * @param runs    The number of runs.
+     */
+    EnsembleResult(Class<?>[] species, int steps, int runs) {
+        this.species = species;
+        this.steps = steps;
+        this.runs = runs;
+        this.sums = new long[species.length][steps + 1];
+        this.squares = new double[species.length][steps + 1];
+        this.widths = new int[species.length][steps + 1];
+        this.bins = new int[species.length][Math.multiplyExact(steps + 1, BINS)];
+        for (int[] width : widths) {
+            Arrays.fill(width, 1);
+        }
+    }
+
+    /**
+     * Fold a finished run into the statistics. Runs on several threads may
+     * do so at once.
+     *
+     * @param series The populations of the run, by species and step; step 0 is the start.
+     */
+    synchronized void record(int[][] series) {
+        if (folded == runs) {
+            throw new IllegalStateException("All " + runs + " runs are already recorded");
+        }
+        for (int s = 0; s < species.length; s++) {
+            for (int step = 0; step <= steps; step++) {
+                int count = series[s][step];
+                sums[s][step] += count;
+                squares[s][step] += (double) count * count;
+                addToHistogram(s, step, count);
+            }
+        }
+        folded++;
+    }
+
+    /**
+     * Count a population in the histogram of a species and step, widening
+     * the bins until it fits.
+     */
+    private void addToHistogram(int s, int step, int count) {
+        int[] histogram = bins[s];
+        int first = step * BINS;
+        int width = widths[s][step];
+        while (count / width >= BINS) {
+            for (int bin = 0; bin < BINS / 2; bin++) {
+                histogram[first + bin] = histogram[first + 2 * bin] + histogram[first + 2 * bin + 1];
+            }
+            for (int bin = BINS / 2; bin < BINS; bin++) {
+                histogram[first + bin] = 0;
+            }
+            width *= 2;
+        }
+        widths[s][step] = width;
+        histogram[first + count / width]++;
+    }
+
+    /**
+     * @return The number of runs.
+     */
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return The number of steps of each run; step 0 is the starting position.
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Return the mean population of a species across the runs after a step.
+     *
+     * @param type The class of actor.
+     * @param step The step.
+     * @return The mean.
+     */
+    public synchronized double getMean(Class<?> type, int step) {
+        return (double) sums[indexOf(type)][step] / folded;
+    }
+
+    /**
+     * Return the variance of the population of a species across the runs
+     * after a step.
+     *
+     * @param type The class of actor.
+     * @param step The step.
+     * @return The variance of the runs, taken as the whole population.
+     */
+    public synchronized double getVariance(Class<?> type, int step) {
+        int s = indexOf(type);
+        double mean = (double) sums[s][step] / folded;
+        return Math.max(0, squares[s][step] / folded - mean * mean);
+    }
+
+    /**
+     * Return a quantile of the population of a species across the runs after a
+     * step, interpolating between the runs either side of it. Where a run
+     * falls in a histogram bin wider than one, the runs of the bin are taken
+     * to be spread evenly over it.
+     *
+     * @param type     The class of actor.
+     * @param step     The step.
+     * @param quantile The quantile, from 0 (the smallest) to 1 (the largest).
+     * @return The quantile.
+     */
+    public synchronized double getQuantile(Class<?> type, int step, double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile out of range: " + quantile);
+        }
+        int s = indexOf(type);
+        double position = quantile * (folded - 1);
+        int below = (int) Math.floor(position);
+        int above = Math.min(below + 1, folded - 1);
+        double low = orderStatistic(s, step, below);
+        return low + (position - below) * (orderStatistic(s, step, above) - low);
+    }
+
+    /**
+     * @return The population of the given rank among the runs, from the
+     *         histogram of a species and step.
+     */
+    private double orderStatistic(int s, int step, int rank) {
+        int[] histogram = bins[s];
+        int first = step * BINS;
+        int width = widths[s][step];
+        int before = 0;
+        for (int bin = 0; bin < BINS; bin++) {
+            int inBin = histogram[first + bin];
+            if (rank < before + inBin) {
+                return (double) bin * width + (width - 1) * (rank - before + 0.5) / inBin;
+            }
+            before += inBin;
+        }
+        throw new IllegalStateException("No runs recorded");
+    }
+
+    /**
+     * Write the mean, the median and the 5% and 95% quantiles of every
+     * population after every step, as comma-separated values with a header.
+     *
+     * @param out Where to write.
+     * @throws IOException If writing fails.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder("Step");
+        for (Class<?> type : species) {
+            String name = type.getSimpleName();
+            line.append(',').append(name).append("Mean");
+            line.append(',').append(name).append("P05");
+            line.append(',').append(name).append("P50");
+            line.append(',').append(name).append("P95");
+        }
+        out.write(line.append('\n').toString());
+        for (int step = 0; step <= steps; step++) {
+            line.setLength(0);
+            line.append(step);
+            for (Class<?> type : species) {
+                line.append(',').append(getMean(type, step));
+                line.append(',').append(getQuantile(type, step, 0.05));
+                line.append(',').append(getQuantile(type, step, 0.5));
+                line.append(',').append(getQuantile(type, step, 0.95));
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    /**
+     * @return The index of a species among those kept.
+     */
+    private int indexOf(Class<?> type) {
+        for (int s = 0; s < species.length; s++) {
+            if (species[s] == type) {
+                return s;
+            }
+        }
+        throw new IllegalArgumentException("No populations kept for " + type.getSimpleName());
+    }
+}
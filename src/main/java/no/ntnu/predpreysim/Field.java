@@ -1,15 +1,25 @@
 package no.ntnu.predpreysim;
 
 import no.ntnu.predpreysim.actor.Actor;
+import no.ntnu.predpreysim.actor.ActorState;
+import no.ntnu.predpreysim.actor.OrganismPool;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * Represent a rectangular grid of field positions.
  * Each position is able to store a single actor.
+ * <p>
+ * The positions can be addressed either by {@link Location} or by a cell index.
+ * The mapping from (row, col, zindex) to cell index is given by the
+ * {@link FieldLayout} of the field, and where the cells are kept by its {@link FieldStorage}.
  *
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
@@ -17,36 +27,191 @@ import java.util.Random;
 public class Field {
     // A random number generator for providing random locations.
     private static final Random rand = Randomizer.getRandom();
+    // The layout used when none is given.
+    public static final FieldLayout DEFAULT_LAYOUT = FieldLayout.INTERLEAVED;
+    // Returned by neighbourhood walks that did not stop at any cell.
+    public static final long NO_CELL = -1;
+    // A visitor that stops at the first cell it is given.
+    public static final CellVisitor ANY_CELL = (field, cell) -> true;
+    // The number of bits of a row or column within a tile of changes, see trackChanges.
+    static final int CHANGE_TILE_BITS = 6;
+    // The empty species set, which neighbourhood searches take to mean free cells.
+    private static final long FREE = 0;
+    // A visitor that stops at the first cell with no actor in it.
+    public static final CellVisitor FREE_CELL = (field, cell) -> field.getObjectAt(cell) == null;
 
     // The height and width of the field.
-    private int height, width, depth;
-    // Storage for the actors.
-    private Object[][][] field;
+    private final int height, width, depth;
+    // How the cells are arranged in storage.
+    private final FieldLayout layout;
+    // Where the cells are kept.
+    private final FieldStorage storage;
+    // The distance between adjacent rows, columns and layers in the cell index.
+    private final int rowStride, colStride, layerStride;
+    // The width of the ring of wall cells around each layer, see FieldLayout.PADDED.
+    private final int halo;
+    // The cell index of position (0, 0, 0).
+    private final long origin;
+    // What a cell index is divided by, after the stride, to get the row, column and layer.
+    private final long rowModulus, colModulus, zindexModulus;
+    // Storage for the actors and the shared location of each cell.
+    // This and the bitmaps and counts below are swapped by buffered steps.
+    private CellStore cells;
+    // Which positions of each layer hold an actor.
+    private LayerBitmap[] occupied;
+    // Which positions of each layer hold an actor of each species, by species id and layer.
+    private LayerBitmap[][] speciesBits = new LayerBitmap[0][];
+    // The number of actors of each species in the field, by species id.
+    private int[] speciesCounts = new int[0];
+    // The species counts while tiles are changed from several threads, otherwise null.
+    private AtomicIntegerArray concurrentCounts;
+    // The largest distance actors may reach from their cell, see getReach().
+    private int reach = Integer.MAX_VALUE;
+    // Whether a buffered step is running, see isBuffered().
+    private boolean buffered;
+    // The changes put off until the end of the buffered step.
+    private final List<Runnable> deferred = new ArrayList<>();
+    // The strongest claim on each piece of food during the buffered step, by the food.
+    private final Map<Object, Meal> meals = new IdentityHashMap<>();
+    // The priority and starting cell of the actor acting in the buffered step, see setClaimant.
+    private long claimPriority, claimOrigin;
+    // Precomputed neighbourhoods for walks up to NeighbourTables.MAX_DISTANCE.
+    private final NeighbourTables neighbourTables;
+    // Reusable buffers for larger neighbourhood walks, one per nesting level.
+    private long[][] scratch = new long[4][];
+    // How many neighbourhood walks are currently in progress.
+    private int walkDepth;
+    // The characteristics of the species living in the field.
+    private SimulationParameters parameters = SimulationParameters.defaults();
+    // The dead organisms of this field, kept for its newborns.
+    private final OrganismPool organisms = new OrganismPool();
+    // The world image whose actors have not all been made yet, otherwise null.
+    private WorldImage image;
+    // Which tiles have had an actor placed or cleared since they were last taken, or null if not tracked.
+    private boolean[] changedTiles;
 
     /**
      * Represent a field of the given dimensions.
      *
      * @param height The height of the field.
      * @param width  The width of the field.
+     * @param depth  The number of layers in the field.
      */
     public Field(int height, int width, int depth) {
+        this(height, width, depth, DEFAULT_LAYOUT);
+    }
+
+    /**
+     * Represent a field of the given dimensions, using the given storage layout.
+     *
+     * @param height The height of the field.
+     * @param width  The width of the field.
+     * @param depth  The number of layers in the field.
+     * @param layout How the cells are arranged in storage.
+     */
+    public Field(int height, int width, int depth, FieldLayout layout) {
+        this(height, width, depth, layout, FieldStorage.HEAP);
+    }
+
+    /**
+     * Represent a field of the given dimensions, using the given storage layout
+     * and keeping the cells in the given kind of storage.
+     *
+     * @param height  The height of the field.
+     * @param width   The width of the field.
+     * @param depth   The number of layers in the field.
+     * @param layout  How the cells are arranged in storage.
+     * @param storage Where the cells are kept.
+     */
+    public Field(int height, int width, int depth, FieldLayout layout, FieldStorage storage) {
+        if (height <= 0 || width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Unsupported field size " + height + "x" + width + "x" + depth);
+        }
         this.height = height;
         this.width = width;
         this.depth = depth;
-        field = new Object[height][width][depth];
+        this.layout = layout;
+        this.storage = storage;
+        halo = layout.halo();
+        int paddedHeight = height + 2 * halo;
+        int paddedWidth = width + 2 * halo;
+        rowStride = layout.rowStride(paddedHeight, paddedWidth, depth);
+        colStride = layout.colStride(paddedHeight, paddedWidth, depth);
+        layerStride = layout.layerStride(paddedHeight, paddedWidth, depth);
+        origin = (long) halo * rowStride + (long) halo * colStride;
+        rowModulus = modulus(rowStride, paddedHeight);
+        colModulus = modulus(colStride, paddedWidth);
+        zindexModulus = modulus(layerStride, depth);
+        cells = storage.createStore(layout, paddedHeight, paddedWidth, depth);
+        occupied = new LayerBitmap[depth];
+        for (int zindex = 0; zindex < depth; zindex++) {
+            occupied[zindex] = layout.createBitmap(paddedHeight, paddedWidth);
+        }
+        buildWalls();
+        neighbourTables = new NeighbourTables(height, width, depth, rowStride, colStride, layerStride, rand);
+    }
+
+    /**
+     * Return how many values of one coordinate fit between its stride and the next
+     * larger stride, or Long.MAX_VALUE for the outermost coordinate.
+     */
+    private long modulus(int stride, int extent) {
+        if (extent == 1) {
+            return 1;
+        }
+        long next = Long.MAX_VALUE;
+        for (int other : new int[]{rowStride, colStride, layerStride}) {
+            if (other > stride && other < next) {
+                next = other;
+            }
+        }
+        return next == Long.MAX_VALUE ? next : next / stride;
+    }
+
+    /**
+     * Mark the ring of wall cells as occupied, so that searches for free cells pass
+     * over them. Walls have no species bits, so searches for food pass over them too.
+     */
+    private void buildWalls() {
+        if (halo == 0) {
+            return;
+        }
+        for (LayerBitmap layer : occupied) {
+            for (int row = 0; row < height + 2 * halo; row++) {
+                boolean wallRow = row < halo || row >= height + halo;
+                for (int col = 0; col < width + 2 * halo; col++) {
+                    if (wallRow || col < halo || col >= width + halo) {
+                        layer.set(row, col);
+                    }
+                }
+            }
+        }
     }
 
     /**
      * Empty the field.
      */
     public void clear() {
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                for (int zindex = 0; zindex < depth; zindex++) {
-                    field[row][col][zindex] = null;
+        if (image != null) {
+            image.detach();
+            image = null;
+        }
+        if (changedTiles != null) {
+            Arrays.fill(changedTiles, true);
+        }
+        cells.clear();
+        for (LayerBitmap layer : occupied) {
+            layer.clearAll();
+        }
+        buildWalls();
+        for (LayerBitmap[] layers : speciesBits) {
+            for (LayerBitmap layer : layers) {
+                if (layer != null) {
+                    layer.clearAll();
                 }
             }
         }
+        Arrays.fill(speciesCounts, 0);
     }
 
     /**
@@ -55,7 +220,16 @@ public class Field {
      * @param location The location to clear.
      */
     public void clear(Location location) {
-        field[location.getRow()][location.getCol()][location.getZindex()] = null;
+        store(null, location);
+    }
+
+    /**
+     * Clear the given cell.
+     *
+     * @param cell The index of the cell to clear.
+     */
+    public void clear(long cell) {
+        store(null, cell, getRow(cell), getCol(cell), getZindex(cell));
     }
 
     /**
@@ -68,7 +242,7 @@ public class Field {
      * @param col   Column coordinate of the location.
      */
     public void place(Actor actor, int row, int col, int zindex) {
-        place(actor, new Location(row, col, zindex));
+        store(actor, getCell(row, col, zindex), row, col, zindex);
     }
 
     /**
@@ -80,8 +254,385 @@ public class Field {
      * @param location Where to place the actor.
      */
     public void place(Actor actor, Location location) {
-//        field[location.getRow()][location.getCol()][actor.getLayerValue()] = (Object) actor;
-        field[location.getRow()][location.getCol()][location.getZindex()] = (Object) actor; //TODO this is a problem
+        store(actor, location);
+    }
+
+    /**
+     * Place an actor in the given cell.
+     * If there is already an actor in the cell it will
+     * be lost.
+     *
+     * @param actor The actor to be placed.
+     * @param cell  The index of the cell.
+     */
+    public void place(Actor actor, long cell) {
+        store(actor, cell, getRow(cell), getCol(cell), getZindex(cell));
+    }
+
+    /**
+     * Put an actor, or nothing, at a location.
+     */
+    private void store(Actor actor, Location location) {
+        int row = location.getRow();
+        int col = location.getCol();
+        int zindex = location.getZindex();
+        store(actor, getCell(row, col, zindex), row, col, zindex);
+    }
+
+    /**
+     * Put an actor, or nothing, in a cell and keep the occupancy bits, species
+     * bits and species counts in step. All changes to the field go through here.
+     * During a buffered step the field does not change.
+     */
+    private void store(Actor actor, long cell, int row, int col, int zindex) {
+        if (buffered) {
+            return;
+        }
+        if (changedTiles != null) {
+            changedTiles[(row >> CHANGE_TILE_BITS) * getTilesWide() + (col >> CHANGE_TILE_BITS)] = true;
+        }
+        // The bitmaps include the ring of walls.
+        row += halo;
+        col += halo;
+        Object previous = cells.get(cell);
+        if (previous == null && image != null) {
+            // The actor of an image is made before it is replaced, so it is not left behind in the list.
+            previous = image.materialise(cell);
+        }
+        if (previous != null) {
+            int species = Species.idOf(previous.getClass());
+            speciesLayer(species, zindex).clear(row, col);
+            count(species, -1);
+        }
+        cells.set(cell, actor);
+        if (actor == null) {
+            occupied[zindex].clear(row, col);
+        } else {
+            int species = Species.idOf(actor.getClass());
+            occupied[zindex].set(row, col);
+            speciesLayer(species, zindex).set(row, col);
+            count(species, 1);
+        }
+    }
+
+    /**
+     * Mark a cell as holding an actor of a species without putting the actor
+     * there yet. A field loaded from a world image is filled in this way, and
+     * its actors made when they are first needed, see {@link #materialise}.
+     *
+     * @param cell    The cell.
+     * @param species The species id.
+     */
+    void occupy(long cell, int species) {
+        int row = getRow(cell) + halo;
+        int col = getCol(cell) + halo;
+        int zindex = getZindex(cell);
+        occupied[zindex].set(row, col);
+        speciesLayer(species, zindex).set(row, col);
+        count(species, 1);
+    }
+
+    /**
+     * Make the actor of a cell that was only marked by occupy. The actor places
+     * itself, and the cell was counted when it was marked, so it is not counted
+     * again. During a buffered step, when placing has no effect, the actor is
+     * put straight in the cell.
+     *
+     * @param type  The class of the actor.
+     * @param cell  The cell.
+     * @param age   The age of the actor.
+     * @param state The food level or size of the actor.
+     * @return The actor.
+     */
+    Actor materialise(Class<?> type, long cell, int age, int state) {
+        if (!buffered) {
+            count(Species.idOf(type), -1);
+        }
+        Actor actor = ActorState.restore(type, this, getLocation(cell), age, state);
+        if (buffered) {
+            cells.set(cell, actor);
+        }
+        return actor;
+    }
+
+    /**
+     * Make the actors of a world image on demand, or stop doing so.
+     *
+     * @param image The image whose cells have been marked by occupy, or null.
+     */
+    void setImage(WorldImage image) {
+        this.image = image;
+    }
+
+    /**
+     * Start keeping track of which tiles change, or start over. The field is cut
+     * into tiles of 2^CHANGE_TILE_BITS rows and columns, through all layers, and
+     * numbered row by row. A tile changes when an actor is placed in or cleared
+     * from one of its cells, or marks it through markChanged. All tiles start
+     * out changed.
+     */
+    void trackChanges() {
+        changedTiles = new boolean[getTileCount()];
+        Arrays.fill(changedTiles, true);
+    }
+
+    /**
+     * Mark the tile of a location as changed, see trackChanges. Actors call this
+     * when they change something about themselves that a checkpoint saves.
+     *
+     * @param location The location.
+     */
+    public void markChanged(Location location) {
+        if (changedTiles != null) {
+            changedTiles[(location.getRow() >> CHANGE_TILE_BITS) * getTilesWide()
+                    + (location.getCol() >> CHANGE_TILE_BITS)] = true;
+        }
+    }
+
+    /**
+     * Tell whether a tile has changed since this was last asked, and forget it.
+     *
+     * @param tile The number of the tile.
+     * @return true if the tile has changed.
+     */
+    boolean takeChange(int tile) {
+        boolean changed = changedTiles[tile];
+        changedTiles[tile] = false;
+        return changed;
+    }
+
+    /**
+     * @return The number of tiles across the field, see trackChanges.
+     */
+    int getTilesWide() {
+        return tilesAcross(width);
+    }
+
+    /**
+     * @return The number of tiles in the field, see trackChanges.
+     */
+    int getTileCount() {
+        return tilesAcross(height) * tilesAcross(width);
+    }
+
+    /**
+     * @return The number of tiles that cover a height or width, see trackChanges.
+     */
+    static int tilesAcross(int extent) {
+        return ((extent - 1) >> CHANGE_TILE_BITS) + 1;
+    }
+
+    /**
+     * Change the count of a species.
+     */
+    private void count(int species, int delta) {
+        if (concurrentCounts == null) {
+            speciesCounts[species] += delta;
+        } else {
+            concurrentCounts.addAndGet(species, delta);
+        }
+    }
+
+    /**
+     * Get ready for tiles of the field to be changed from several threads at once,
+     * as {@link ParallelStepEngine} does. Every species seen so far gets its bitmaps
+     * up front, the species counts are kept atomically, and actors may reach no
+     * further than the given distance until endConcurrent is called.
+     *
+     * @param reach The largest distance an actor may reach from its cell.
+     * @throws IllegalStateException If the storage of the field cannot be shared.
+     */
+    void beginConcurrent(int reach) {
+        if (!cells.isTileParallel()) {
+            throw new IllegalStateException("The storage of this field cannot be changed from several threads");
+        }
+        int species = Species.count();
+        for (int id = 0; id < species; id++) {
+            for (int zindex = 0; zindex < depth; zindex++) {
+                speciesLayer(id, zindex);
+            }
+        }
+        concurrentCounts = new AtomicIntegerArray(speciesCounts);
+        this.reach = reach;
+    }
+
+    /**
+     * Go back to changing the field from one thread.
+     */
+    void endConcurrent() {
+        for (int id = 0; id < speciesCounts.length; id++) {
+            speciesCounts[id] = concurrentCounts.get(id);
+        }
+        concurrentCounts = null;
+        reach = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Tell whether a buffered step is running. The field then stays as it was when
+     * the step started: placing and clearing have no effect, and the step engine
+     * builds the next field from where the actors end up. Changes one actor makes
+     * to another should be handed to {@link #defer} instead of being made at once.
+     *
+     * @return true during a buffered step.
+     */
+    public boolean isBuffered() {
+        return buffered;
+    }
+
+    /**
+     * Put off a change until the end of the buffered step, or make it at once if
+     * no buffered step is running.
+     *
+     * @param change The change.
+     */
+    public void defer(Runnable change) {
+        if (buffered) {
+            deferred.add(change);
+        } else {
+            change.run();
+        }
+    }
+
+    /**
+     * Eat a piece of food, or claim it if a buffered step is running. Several
+     * actors may go for the same food during a buffered step; when the step ends
+     * the food goes to the claim of the actor with the highest priority, and an
+     * eater that others have gone for gets nothing.
+     *
+     * @param eater The actor that eats.
+     * @param food  The food.
+     * @param meal  The change eating makes to both of them.
+     */
+    public void claimMeal(Object eater, Object food, Runnable meal) {
+        if (!buffered) {
+            meal.run();
+            return;
+        }
+        Meal held = meals.get(food);
+        if (held == null || held.beatenBy(claimPriority, claimOrigin)) {
+            meals.put(food, new Meal(eater, claimPriority, claimOrigin, meal));
+        }
+    }
+
+    /**
+     * Freeze the field for a buffered step.
+     */
+    void beginBuffered() {
+        buffered = true;
+    }
+
+    /**
+     * Set the priority that the claims made from now on have, see claimMeal.
+     *
+     * @param priority The priority of the acting actor.
+     * @param origin   The cell the acting actor started the step in, which breaks ties.
+     */
+    void setClaimant(long priority, long origin) {
+        claimPriority = priority;
+        claimOrigin = origin;
+    }
+
+    /**
+     * Settle the meals claimed during the buffered step, and make the changes put
+     * off during it. The field stays frozen.
+     */
+    void runDeferred() {
+        // Each winning meal changes only its eater and its food, so they can run in any order.
+        for (Meal meal : meals.values()) {
+            if (!meals.containsKey(meal.eater)) {
+                meal.change.run();
+            }
+        }
+        meals.clear();
+        // A change may put off another one, which then runs in the same pass.
+        for (int i = 0; i < deferred.size(); i++) {
+            deferred.get(i).run();
+        }
+        deferred.clear();
+    }
+
+    /**
+     * End the buffered step, taking over the contents of the given field, which
+     * gets the old contents of this one. The two fields must have the same shape.
+     *
+     * @param next The field that was built for the next step.
+     */
+    void endBuffered(Field next) {
+        assert next.height == height && next.width == width && next.depth == depth && next.layout == layout
+                : "Buffered fields differ in shape";
+        CellStore swapCells = cells;
+        cells = next.cells;
+        next.cells = swapCells;
+        LayerBitmap[] swapOccupied = occupied;
+        occupied = next.occupied;
+        next.occupied = swapOccupied;
+        LayerBitmap[][] swapSpecies = speciesBits;
+        speciesBits = next.speciesBits;
+        next.speciesBits = swapSpecies;
+        int[] swapCounts = speciesCounts;
+        speciesCounts = next.speciesCounts;
+        next.speciesCounts = swapCounts;
+        if (changedTiles != null) {
+            // The cells were built again from scratch.
+            Arrays.fill(changedTiles, true);
+        }
+        buffered = false;
+    }
+
+    /**
+     * End a buffered step that failed. The field keeps the contents it had when
+     * the step started, and the changes still put off are dropped.
+     */
+    void abortBuffered() {
+        meals.clear();
+        deferred.clear();
+        buffered = false;
+    }
+
+    /**
+     * @return An empty field of the same shape, layout and storage as this one.
+     */
+    Field emptyCopy() {
+        Field copy = new Field(height, width, depth, layout, storage);
+        copy.parameters = parameters;
+        return copy;
+    }
+
+    /**
+     * Return how far actors may reach from their cell, for example to seed a plant.
+     * This is unlimited except during a parallel step.
+     *
+     * @return The largest distance an actor may reach.
+     */
+    public int getReach() {
+        return reach;
+    }
+
+    /**
+     * @return The width of the ring of wall cells around each layer.
+     */
+    int getHalo() {
+        return halo;
+    }
+
+    /**
+     * Return the species bitmap of one layer, creating it if needed.
+     */
+    private LayerBitmap speciesLayer(int species, int zindex) {
+        if (species >= speciesBits.length) {
+            int oldLength = speciesBits.length;
+            speciesBits = Arrays.copyOf(speciesBits, species + 1);
+            speciesCounts = Arrays.copyOf(speciesCounts, species + 1);
+            for (int id = oldLength; id <= species; id++) {
+                speciesBits[id] = new LayerBitmap[depth];
+            }
+        }
+        LayerBitmap layer = speciesBits[species][zindex];
+        if (layer == null) {
+            layer = layout.createBitmap(height + 2 * halo, width + 2 * halo);
+            speciesBits[species][zindex] = layer;
+        }
+        return layer;
     }
 
     /**
@@ -91,7 +642,7 @@ public class Field {
      * @return The actor at the given location, or null if there is none.
      */
     public Object getObjectAt(Location location) {
-        return getObjectAt(location.getRow(), location.getCol(), location.getZindex());
+        return getObjectAt(getCell(location));
     }
 
     /**
@@ -102,7 +653,616 @@ public class Field {
      * @return The actor at the given location, or null if there is none.
      */
     public Object getObjectAt(int row, int col, int zindex) {
-        return field[row][col][zindex];
+        return getObjectAt(getCell(row, col, zindex));
+    }
+
+    /**
+     * Return the actor in the given cell, if any.
+     *
+     * @param cell The index of the cell.
+     * @return The actor in the cell, or null if there is none.
+     */
+    public Object getObjectAt(long cell) {
+        Object actor = cells.get(cell);
+        if (actor == null && image != null) {
+            actor = image.materialise(cell);
+        }
+        return actor;
+    }
+
+    /**
+     * Return the index of the cell at the given position.
+     *
+     * @param row    The row.
+     * @param col    The column.
+     * @param zindex The layer.
+     * @return The cell index.
+     */
+    public long getCell(int row, int col, int zindex) {
+        assert row >= 0 && row < height && col >= 0 && col < width && zindex >= 0 && zindex < depth
+                : "Position out of bounds: " + row + "," + col + "," + zindex;
+        return origin + (long) row * rowStride + (long) col * colStride + (long) zindex * layerStride;
+    }
+
+    /**
+     * Return the index of the cell at the given location.
+     *
+     * @param location The location.
+     * @return The cell index.
+     */
+    public long getCell(Location location) {
+        return getCell(location.getRow(), location.getCol(), location.getZindex());
+    }
+
+    /**
+     * @return The row of the given cell.
+     */
+    public int getRow(long cell) {
+        return (int) ((cell / rowStride) % rowModulus) - halo;
+    }
+
+    /**
+     * @return The column of the given cell.
+     */
+    public int getCol(long cell) {
+        return (int) ((cell / colStride) % colModulus) - halo;
+    }
+
+    /**
+     * @return The layer of the given cell.
+     */
+    public int getZindex(long cell) {
+        return (int) ((cell / layerStride) % zindexModulus);
+    }
+
+    /**
+     * Return the location of the given cell. The field keeps one location per
+     * cell and hands out the same instance every time; a chunked field only does
+     * so within tiles that hold actors, and an off-heap field only for cells that hold one.
+     *
+     * @param cell The cell index.
+     * @return The location of the cell.
+     */
+    public Location getLocation(long cell) {
+        return cells.location(cell, getRow(cell), getCol(cell), getZindex(cell));
+    }
+
+    /**
+     * Return the location at the given position. The field keeps one location per
+     * cell and hands out the same instance every time.
+     *
+     * @param row    The row.
+     * @param col    The column.
+     * @param zindex The layer.
+     * @return The location of the position.
+     */
+    public Location getLocation(int row, int col, int zindex) {
+        return getLocation(getCell(row, col, zindex));
+    }
+
+    /**
+     * @return The number of cells in the field.
+     */
+    public long getCellCount() {
+        return (long) height * width * depth;
+    }
+
+    /**
+     * Return one more than the highest cell index in the field. Every cell index
+     * lies below it, so it sizes tables indexed by cell. Layouts with padding or
+     * gaps give a limit above the number of cells.
+     *
+     * @return The bound on the cell indices.
+     */
+    public long getCellLimit() {
+        return getCell(height - 1, width - 1, depth - 1) + 1;
+    }
+
+    /**
+     * Tell whether a number is the index of a cell of the field, and not one
+     * that lies outside it, in padding or in a gap of the layout. Numbers read
+     * from a file are checked with this before they are used as cells.
+     *
+     * @param cell The number.
+     * @return true if it is the index of a cell.
+     */
+    public boolean isCell(long cell) {
+        if (cell < 0 || cell >= getCellLimit()) {
+            return false;
+        }
+        int row = getRow(cell);
+        int col = getCol(cell);
+        int zindex = getZindex(cell);
+        return row >= 0 && row < height && col >= 0 && col < width && zindex < depth
+                && getCell(row, col, zindex) == cell;
+    }
+
+    /**
+     * @return Where the cells of this field are kept.
+     */
+    public FieldStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * @return The parameters of the species living in the field.
+     */
+    public SimulationParameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Return the pools of dead organisms that newborns in this field reuse. While
+     * tiles act on several threads there is none, and newborns are made new.
+     *
+     * @return The pools, or null during a parallel step.
+     */
+    public OrganismPool getOrganismPool() {
+        return concurrentCounts == null ? organisms : null;
+    }
+
+    /**
+     * Set the parameters of the species living in the field. Organisms read
+     * them when they are created, so set them before populating the field.
+     *
+     * @param parameters The parameters.
+     */
+    public void setParameters(SimulationParameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return How the cells of this field are laid out in storage.
+     */
+    public FieldLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Walk the neighbourhood of a location in random order, handing each cell to the
+     * visitor until it asks to stop. No locations or lists are created on the way.
+     *
+     * @param location      The centre of the neighbourhood.
+     * @param distance      The size of the neighbourhood.
+     * @param neighbourhood The shape of the neighbourhood.
+     * @param visitor       Receives the cells of the neighbourhood.
+     * @return The cell at which the visitor stopped, or NO_CELL if it visited them all.
+     */
+    public long visitNeighbours(Location location, int distance, Neighbourhood neighbourhood, CellVisitor visitor) {
+        assert location != null : "Null location passed to visitNeighbours";
+        return visitNeighbours(getCell(location), distance, neighbourhood, visitor);
+    }
+
+    /**
+     * Walk the neighbourhood of a cell in random order, handing each cell to the
+     * visitor until it asks to stop. No locations or lists are created on the way.
+     *
+     * @param cell          The centre of the neighbourhood.
+     * @param distance      The size of the neighbourhood.
+     * @param neighbourhood The shape of the neighbourhood.
+     * @param visitor       Receives the cells of the neighbourhood.
+     * @return The cell at which the visitor stopped, or NO_CELL if it visited them all.
+     */
+    public long visitNeighbours(long cell, int distance, Neighbourhood neighbourhood, CellVisitor visitor) {
+        assert distance >= 0 : "Negative distance passed to visitNeighbours";
+        if (distance <= NeighbourTables.MAX_DISTANCE) {
+            return neighbourTables.visit(this, cell, getRow(cell), getCol(cell), getZindex(cell),
+                                         distance, neighbourhood, visitor);
+        }
+        // Too large to have a table: build the neighbourhood and shuffle it.
+        // The scratch buffers belong to one thread, so concurrent walks bring their own.
+        boolean shared = concurrentCounts == null;
+        int capacity = neighbourhood.capacity(distance, depth);
+        long[] buffer = shared ? acquireScratch(capacity) : new long[capacity];
+        try {
+            int count = collectNeighbours(cell, distance, neighbourhood, buffer);
+            // Several other methods rely on the neighbours being visited in a random order.
+            for (int i = count; i > 1; i--) {
+                int j = rand.nextInt(i);
+                long swap = buffer[i - 1];
+                buffer[i - 1] = buffer[j];
+                buffer[j] = swap;
+            }
+            for (int i = 0; i < count; i++) {
+                if (visitor.visit(this, buffer[i])) {
+                    return buffer[i];
+                }
+            }
+            return NO_CELL;
+        } finally {
+            if (shared) {
+                releaseScratch();
+            }
+        }
+    }
+
+    /**
+     * Write the cells of a neighbourhood into the buffer, in row, column, layer order.
+     *
+     * @return The number of cells written.
+     */
+    private int collectNeighbours(long cell, int distance, Neighbourhood neighbourhood, long[] buffer) {
+        int row = getRow(cell);
+        int col = getCol(cell);
+        int zindex = getZindex(cell);
+        int firstZ = neighbourhood.spansLayers() ? 0 : zindex;
+        int lastZ = neighbourhood.spansLayers() ? depth - 1 : zindex;
+        int count = 0;
+        for (int nextRow = Math.max(0, row - distance); nextRow <= Math.min(height - 1, row + distance); nextRow++) {
+            for (int nextCol = Math.max(0, col - distance); nextCol <= Math.min(width - 1, col + distance); nextCol++) {
+                for (int nextZindex = firstZ; nextZindex <= lastZ; nextZindex++) {
+                    if (neighbourhood.includes(nextRow - row, nextCol - col, nextZindex - zindex, distance)) {
+                        buffer[count++] = getCell(nextRow, nextCol, nextZindex);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Hand out a scratch buffer for one walk. Walks may be nested, so each
+     * nesting level gets a buffer of its own.
+     */
+    private long[] acquireScratch(int capacity) {
+        if (walkDepth == scratch.length) {
+            scratch = Arrays.copyOf(scratch, walkDepth * 2);
+        }
+        long[] buffer = scratch[walkDepth];
+        if (buffer == null || buffer.length < capacity) {
+            buffer = new long[Math.max(capacity, 64)];
+            scratch[walkDepth] = buffer;
+        }
+        walkDepth++;
+        return buffer;
+    }
+
+    /**
+     * Give back the scratch buffer of the innermost walk.
+     */
+    private void releaseScratch() {
+        walkDepth--;
+    }
+
+    /**
+     * Pick a random free location in the neighbourhood of a location. Every free
+     * location in the neighbourhood is equally likely to be picked.
+     *
+     * @param location      The centre of the neighbourhood.
+     * @param distance      The size of the neighbourhood.
+     * @param neighbourhood The shape of the neighbourhood.
+     * @return A free location, or null if the neighbourhood is full.
+     */
+    public Location randomFreeNeighbour(Location location, int distance, Neighbourhood neighbourhood) {
+        assert location != null : "Null location passed to randomFreeNeighbour";
+        return locationOf(randomFreeNeighbour(getCell(location), distance, neighbourhood));
+    }
+
+    /**
+     * Pick a random free cell in the neighbourhood of a cell. Every free cell in
+     * the neighbourhood is equally likely to be picked.
+     *
+     * @param cell          The centre of the neighbourhood.
+     * @param distance      The size of the neighbourhood.
+     * @param neighbourhood The shape of the neighbourhood.
+     * @return A free cell, or NO_CELL if the neighbourhood is full.
+     */
+    public long randomFreeNeighbour(long cell, int distance, Neighbourhood neighbourhood) {
+        return randomMatch(cell, distance, neighbourhood, FREE);
+    }
+
+    /**
+     * Pick a random free cell in the neighbourhood of a cell, other than the
+     * cells already taken from the same neighbourhood. Every other free cell is
+     * equally likely to be picked. Cells taken by actors placed since are no
+     * longer free anyway; this matters during a buffered step, when placing has
+     * no effect.
+     *
+     * @param cell          The centre of the neighbourhood.
+     * @param distance      The size of the neighbourhood.
+     * @param neighbourhood The shape of the neighbourhood.
+     * @param taken         Cells picked earlier from the same neighbourhood.
+     * @param takenCount    How many of them there are.
+     * @return A free cell, or NO_CELL if the neighbourhood is full.
+     */
+    public long randomFreeNeighbour(long cell, int distance, Neighbourhood neighbourhood, long[] taken,
+                                    int takenCount) {
+        return randomMatch(cell, distance, neighbourhood, FREE, taken, takenCount);
+    }
+
+    /**
+     * @return true if the cell is among the first count cells.
+     */
+    private static boolean contains(long[] cells, int count, long cell) {
+        for (int i = 0; i < count; i++) {
+            if (cells[i] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pick a random location in the neighbourhood of a location that holds an
+     * actor of one of the given species. Every such location is equally likely
+     * to be picked.
+     *
+     * @param location      The centre of the neighbourhood.
+     * @param distance      The size of the neighbourhood.
+     * @param neighbourhood The shape of the neighbourhood.
+     * @param species       The set of species to look for, see {@link Species#setOf}.
+     * @return A matching location, or null if there is none.
+     */
+    public Location randomNeighbourOfSpecies(Location location, int distance, Neighbourhood neighbourhood,
+                                             long species) {
+        assert location != null : "Null location passed to randomNeighbourOfSpecies";
+        return locationOf(randomNeighbourOfSpecies(getCell(location), distance, neighbourhood, species));
+    }
+
+    /**
+     * Pick a random cell in the neighbourhood of a cell that holds an actor of one
+     * of the given species. Every such cell is equally likely to be picked.
+     *
+     * @param cell          The centre of the neighbourhood.
+     * @param distance      The size of the neighbourhood.
+     * @param neighbourhood The shape of the neighbourhood.
+     * @param species       The set of species to look for, see {@link Species#setOf}.
+     * @return A matching cell, or NO_CELL if there is none.
+     */
+    public long randomNeighbourOfSpecies(long cell, int distance, Neighbourhood neighbourhood, long species) {
+        assert species != FREE : "Empty species set passed to randomNeighbourOfSpecies";
+        return randomMatch(cell, distance, neighbourhood, species);
+    }
+
+    /**
+     * Pick a random cell in the neighbourhood of a cell that holds an actor of one
+     * of the given species, other than the cells already taken from the same
+     * neighbourhood. Every other such cell is equally likely to be picked. Cells
+     * whose actors have left since no longer match anyway; this matters during a
+     * buffered step, when killing an actor only takes effect at the end.
+     *
+     * @param cell          The centre of the neighbourhood.
+     * @param distance      The size of the neighbourhood.
+     * @param neighbourhood The shape of the neighbourhood.
+     * @param species       The set of species to look for, see {@link Species#setOf}.
+     * @param taken         Cells picked earlier from the same neighbourhood.
+     * @param takenCount    How many of them there are.
+     * @return A matching cell, or NO_CELL if there is none.
+     */
+    public long randomNeighbourOfSpecies(long cell, int distance, Neighbourhood neighbourhood, long species,
+                                         long[] taken, int takenCount) {
+        assert species != FREE : "Empty species set passed to randomNeighbourOfSpecies";
+        return randomMatch(cell, distance, neighbourhood, species, taken, takenCount);
+    }
+
+    /**
+     * Pick a random matching cell of a neighbourhood. Cells are matched through the
+     * bitmaps a word at a time: each row of the neighbourhood is masked out of the
+     * bitmaps of its layer, the matches are counted, and the chosen one is found in
+     * a second pass.
+     *
+     * @param species The set of species to match, or FREE to match empty cells.
+     */
+    private long randomMatch(long cell, int distance, Neighbourhood neighbourhood, long species) {
+        assert distance >= 0 : "Negative distance passed to a neighbourhood search";
+        int row = getRow(cell);
+        int col = getCol(cell);
+        int zindex = getZindex(cell);
+        long matches = scan(row, col, zindex, distance, neighbourhood, species, -1);
+        if (matches == 0) {
+            return NO_CELL;
+        }
+        return scan(row, col, zindex, distance, neighbourhood, species, rand.nextInt((int) matches));
+    }
+
+    /**
+     * Pick a random matching cell of a neighbourhood other than the given ones.
+     *
+     * @param species The set of species to match, or FREE to match empty cells.
+     */
+    private long randomMatch(long cell, int distance, Neighbourhood neighbourhood, long species, long[] taken,
+                             int takenCount) {
+        int row = getRow(cell);
+        int col = getCol(cell);
+        int zindex = getZindex(cell);
+        long matches = scan(row, col, zindex, distance, neighbourhood, species, -1);
+        long left = matches;
+        for (int t = 0; t < takenCount; t++) {
+            if (matches(taken[t], species)) {
+                left--;
+            }
+        }
+        if (left <= 0) {
+            return NO_CELL;
+        }
+        // Draw again until the pick is not taken; without taken matching cells the first draw stands.
+        while (true) {
+            long pick = scan(row, col, zindex, distance, neighbourhood, species, rand.nextInt((int) matches));
+            if (!contains(taken, takenCount, pick)) {
+                return pick;
+            }
+        }
+    }
+
+    /**
+     * @param species The set of species to match, or FREE to match an empty cell.
+     * @return true if the cell holds an actor of one of the species, or is empty for FREE.
+     */
+    private boolean matches(long cell, long species) {
+        Object actor = getObjectAt(cell);
+        if (species == FREE) {
+            return actor == null;
+        }
+        return actor != null && (species & 1L << Species.idOf(actor.getClass())) != 0;
+    }
+
+    /**
+     * Walk the matching cells of a neighbourhood through the bitmaps. Positions are
+     * taken in bitmap coordinates, which include the ring of walls; a neighbourhood
+     * that fits within the walls needs no clipping to the bitmap.
+     *
+     * @param species The set of species to match, or FREE to match empty cells.
+     * @param pick    Which match to return, or -1 to count them instead.
+     * @return The number of matches if pick is -1, otherwise the picked cell.
+     */
+    private long scan(int row, int col, int zindex, int distance, Neighbourhood neighbourhood, long species, int pick) {
+        row += halo;
+        col += halo;
+        int firstRow = row - distance;
+        int lastRow = row + distance;
+        int minCol = Integer.MIN_VALUE;
+        int maxCol = Integer.MAX_VALUE;
+        if (distance > halo) {
+            firstRow = Math.max(0, firstRow);
+            lastRow = Math.min(height + 2 * halo - 1, lastRow);
+            minCol = 0;
+            maxCol = width + 2 * halo - 1;
+        }
+        boolean ring = neighbourhood.isRing();
+        int firstZ = neighbourhood.spansLayers() ? 0 : zindex;
+        int lastZ = neighbourhood.spansLayers() ? depth - 1 : zindex;
+        int remaining = pick;
+        int count = 0;
+        for (int nextZindex = firstZ; nextZindex <= lastZ; nextZindex++) {
+            boolean ownLayer = nextZindex == zindex;
+            if (ownLayer && !neighbourhood.includesOwnLayer()) {
+                continue;
+            }
+            if (species != FREE && !hasSpeciesOnLayer(species, nextZindex)) {
+                continue;
+            }
+            for (int nextRow = firstRow; nextRow <= lastRow; nextRow++) {
+                int roffset = nextRow - row;
+                // Each row of the neighbourhood is at most two runs of columns.
+                int from1, to1, from2, to2;
+                if (ring && Math.abs(roffset) < distance) {
+                    from1 = to1 = col - distance;
+                    from2 = to2 = col + distance;
+                } else if (!ring && roffset == 0 && ownLayer) {
+                    from1 = col - distance;
+                    to1 = col - 1;
+                    from2 = col + 1;
+                    to2 = col + distance;
+                } else {
+                    from1 = col - distance;
+                    to1 = col + distance;
+                    from2 = 1;
+                    to2 = 0;
+                }
+                for (int run = 0; run < 2; run++) {
+                    int from = Math.max(minCol, run == 0 ? from1 : from2);
+                    int to = Math.min(maxCol, run == 0 ? to1 : to2);
+                    for (int wordIndex = from >>> 6; from <= to && wordIndex <= to >>> 6; wordIndex++) {
+                        int low = Math.max(from, wordIndex << 6) & 63;
+                        int high = Math.min(to, (wordIndex << 6) + 63) & 63;
+                        long bits = matchWord(species, nextZindex, nextRow, wordIndex)
+                                & (-1L >>> (63 - high)) & (-1L << low);
+                        int found = Long.bitCount(bits);
+                        if (pick < 0) {
+                            count += found;
+                        } else if (remaining < found) {
+                            for (; remaining > 0; remaining--) {
+                                bits &= bits - 1;
+                            }
+                            int matchCol = (wordIndex << 6) + Long.numberOfTrailingZeros(bits);
+                            return getCell(nextRow - halo, matchCol - halo, nextZindex);
+                        } else {
+                            remaining -= found;
+                        }
+                    }
+                }
+            }
+        }
+        return pick < 0 ? count : NO_CELL;
+    }
+
+    /**
+     * Write one more than the species id of every occupied cell into an array
+     * indexed by row, column and layer, as {@link Snapshot} keeps them. The
+     * species bitmaps are read a word at a time, so empty stretches cost little
+     * and no actor is looked at, nor made from a world image.
+     *
+     * @param species The array, of height * width * depth entries; empty cells are left alone.
+     */
+    void fillSpecies(byte[] species) {
+        int firstWord = halo >>> 6;
+        int lastWord = (width - 1 + halo) >>> 6;
+        for (int id = 0; id < speciesBits.length; id++) {
+            byte mark = (byte) (id + 1);
+            for (int zindex = 0; zindex < depth; zindex++) {
+                LayerBitmap layer = speciesBits[id][zindex];
+                if (layer == null) {
+                    continue;
+                }
+                for (int row = 0; row < height; row++) {
+                    for (int wordIndex = firstWord; wordIndex <= lastWord; wordIndex++) {
+                        for (long bits = layer.word(row + halo, wordIndex); bits != 0; bits &= bits - 1) {
+                            int col = (wordIndex << 6) + Long.numberOfTrailingZeros(bits) - halo;
+                            species[(row * width + col) * depth + zindex] = mark;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if any species of the set has a bitmap on the layer.
+     */
+    private boolean hasSpeciesOnLayer(long species, int zindex) {
+        for (long rest = species; rest != 0; rest &= rest - 1) {
+            int id = Long.numberOfTrailingZeros(rest);
+            if (id < speciesBits.length && speciesBits[id][zindex] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return one word of matches from the bitmaps of a layer.
+     *
+     * @param species The set of species to match, or FREE to match empty cells.
+     */
+    private long matchWord(long species, int zindex, int row, int wordIndex) {
+        if (species == FREE) {
+            return ~occupied[zindex].word(row, wordIndex);
+        }
+        long bits = 0;
+        for (long rest = species; rest != 0; rest &= rest - 1) {
+            int id = Long.numberOfTrailingZeros(rest);
+            if (id < speciesBits.length && speciesBits[id][zindex] != null) {
+                bits |= speciesBits[id][zindex].word(row, wordIndex);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Return a list of the locations in a neighbourhood, in random order.
+     *
+     * @param freeOnly If true, only locations with no actor are included.
+     */
+    private List<Location> neighbourList(Location location, int distance, Neighbourhood neighbourhood,
+                                         boolean freeOnly) {
+        assert location != null : "Null location passed to adjacentLocations";
+        List<Location> locations = new LinkedList<>();
+        if (location != null) {
+            visitNeighbours(location, distance, neighbourhood, (field, cell) -> {
+                if (!freeOnly || field.getObjectAt(cell) == null) {
+                    locations.add(field.getLocation(cell));
+                }
+                return false;
+            });
+        }
+        return locations;
+    }
+
+    /**
+     * Return the location a walk stopped at, or null if it did not stop.
+     */
+    private Location locationOf(long cell) {
+        return cell == NO_CELL ? null : getLocation(cell);
     }
 
     /**
@@ -115,8 +1275,7 @@ public class Field {
      * @return A valid location within the grid area.
      */
     public Location randomAdjacentLocation(Location location) {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+        return locationOf(visitNeighbours(location, 1, Neighbourhood.RING_OTHER_LAYERS, ANY_CELL));
     }
 
     /**
@@ -126,14 +1285,7 @@ public class Field {
      * @return A list of free adjacent locations.
      */
     public List<Location> getFreeAdjacentLocations(Location location) {
-        List<Location> free = new LinkedList<>();
-        List<Location> adjacent = adjacentLocations(location);
-        for (Location next : adjacent) {
-            if (getObjectAt(next) == null) {
-                free.add(next);
-            }
-        }
-        return free;
+        return neighbourList(location, 1, Neighbourhood.RING_OTHER_LAYERS, true);
     }
 
     /**
@@ -143,14 +1295,7 @@ public class Field {
      * @return A list of free adjacent locations.
      */
     public List<Location> getFreeAdjacentLocationsOnLayer(Location location) {
-        List<Location> free = new LinkedList<>();
-        List<Location> adjacent = adjacentLocationsOnLayer(location);
-        for (Location next : adjacent) {
-            if (getObjectAt(next) == null) {
-                free.add(next);
-            }
-        }
-        return free;
+        return neighbourList(location, 1, Neighbourhood.RING_ON_LAYER, true);
     }
 
     /**
@@ -160,14 +1305,7 @@ public class Field {
      * @return A list of free adjacent locations.
      */
     public List<Location> getFreeAdjacentLocationsOnLayerWithDistance(Location location, int distance) {
-        List<Location> free = new LinkedList<>();
-        List<Location> adjacent = adjacentLocationsOnLayerByDistance(location, distance);
-        for (Location next : adjacent) {
-            if (getObjectAt(next) == null) {
-                free.add(next);
-            }
-        }
-        return free;
+        return neighbourList(location, distance, Neighbourhood.RING_ON_LAYER, true);
     }
 
     /**
@@ -180,13 +1318,7 @@ public class Field {
      * @return A valid location within the grid area.
      */
     public Location freeAdjacentLocation(Location location) {
-        // The available free ones.
-        List<Location> free = getFreeAdjacentLocations(location);
-        if (free.size() > 0) {
-            return free.get(0);
-        } else {
-            return null;
-        }
+        return randomFreeNeighbour(location, 1, Neighbourhood.RING_OTHER_LAYERS);
     }
 
     /**
@@ -199,13 +1331,7 @@ public class Field {
      * @return A valid location within the grid area.
      */
     public Location freeAdjacentLocationOnLayer(Location location) {
-        // The available free ones.
-        List<Location> free = getFreeAdjacentLocationsOnLayer(location);
-        if (free.size() > 0) {
-            return free.get(0);
-        } else {
-            return null;
-        }
+        return randomFreeNeighbour(location, 1, Neighbourhood.RING_ON_LAYER);
     }
 
     /**
@@ -233,47 +1359,20 @@ public class Field {
     }
 
     /**
-     * Return a shuffled list of locations on the existing layer (zindex), adjacent to the given one.
-     * The list will not include the location itself.
+     * Return a shuffled list of locations on the existing layer (zindex), at the given distance
+     * from the given one.
      * All locations will lie within the grid.
      *
      * @param location The location from which to generate adjacencies.
      * @return A list of locations adjacent to that given.
      */
     public List<Location> adjacentLocationsOnLayerByDistance(Location location, int distance) {
-        assert location != null : "Null location passed to adjacentLocations";
-        // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
-        if (location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            int zindex = location.getZindex();
-
-            for (int roffset = (-distance); roffset <= (distance); roffset++) {
-                int nextRow = row + roffset;
-                if (nextRow >= 0 && nextRow < height) {
-
-
-                    for (int coffset = (-distance); coffset <= (distance); coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if (nextCol >= 0 && nextCol < width
-                                && (!(roffset > -distance && roffset < distance) || (!(coffset > -distance && coffset < distance)))) {
-
-                            locations.add(new Location(nextRow, nextCol, zindex));
-                        }
-                    }
-                }
-            }
-
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
-        }
-        return locations;
+        return neighbourList(location, distance, Neighbourhood.RING_ON_LAYER, false);
     }
+
     /**
-     * Return a shuffled list of locations on the existing layer (zindex), adjacent to the given one.
+     * Return a shuffled list of locations on the existing layer (zindex), within the given
+     * radius of the given one.
      * The list will not include the location itself.
      * All locations will lie within the grid.
      *
@@ -281,87 +1380,23 @@ public class Field {
      * @return A list of locations adjacent to that given.
      */
     public List<Location> adjacentLocationsOnLayerInRadius(Location location, int radius) {
-        assert location != null : "Null location passed to adjacentLocations";
-        // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
-        if (location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            int zindex = location.getZindex();
-
-            for (int roffset = (-radius); roffset <= (radius); roffset++) {
-                int nextRow = row + roffset;
-                if (nextRow >= 0 && nextRow < height) {
-
-
-                    for (int coffset = (-radius); coffset <= (radius); coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if (nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-
-                            locations.add(new Location(nextRow, nextCol, zindex));
-                        }
-                    }
-                }
-            }
-
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
-        }
-        return locations;
+        return neighbourList(location, radius, Neighbourhood.SQUARE_ON_LAYER, false);
     }
 
-
     /**
-     * Return a shuffled list of locations adjacent to the given one.
-     * The list will not include the location itself.
+     * Return a shuffled list of locations on the other layers, at the given distance
+     * from the given one.
      * All locations will lie within the grid.
      *
      * @param location The location from which to generate adjacencies.
      * @return A list of locations adjacent to that given.
      */
     public List<Location> adjacentLocationsByDistance(Location location, int distance) {
-        assert location != null : "Null location passed to adjacentLocations";
-        // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
-        if (location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            int zindex = location.getZindex();
-
-            for (int roffset = -distance; roffset <= distance; roffset++) {
-                int nextRow = row + roffset;
-                if (nextRow >= 0 && nextRow < height) {
-
-                    for (int coffset = -distance; coffset <= distance; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if (nextCol >= 0 && nextCol < width) {
-
-                            for (int zoffset = -zindex; zoffset <= (this.depth - zoffset); zoffset++) {
-                                int nextZindex = zindex + zoffset;
-                                if (nextZindex >= 0 && nextZindex < depth
-                                        && (!(roffset > -distance && roffset < distance) || (!(coffset > -distance && coffset < distance)))
-                                        && (zoffset != 0)) {
-
-                                    locations.add(new Location(nextRow, nextCol, nextZindex));
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
-        }
-        return locations;
+        return neighbourList(location, distance, Neighbourhood.RING_OTHER_LAYERS, false);
     }
 
     /**
-     * Return a shuffled list of locations adjacent to the given one.
+     * Return a shuffled list of locations on all layers, within the given radius of the given one.
      * The list will not include the location itself.
      * All locations will lie within the grid.
      *
@@ -369,42 +1404,31 @@ public class Field {
      * @return A list of locations adjacent to that given.
      */
     public List<Location> adjacentLocationsInRadius(Location location, int radius) {
-        assert location != null : "Null location passed to adjacentLocations";
-        // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
-        if (location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            int zindex = location.getZindex();
-
-            for (int roffset = -radius; roffset <= radius; roffset++) {
-                int nextRow = row + roffset;
-                if (nextRow >= 0 && nextRow < height) {
-
-                    for (int coffset = -radius; coffset <= radius; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if (nextCol >= 0 && nextCol < width) {
-
-                            for (int zoffset = -zindex; zoffset <= (this.depth - zoffset); zoffset++) {
-                                int nextZindex = zindex + zoffset;
-                                if (nextZindex >= 0 && nextZindex < depth && (roffset != 0 || coffset != 0 || zoffset != 0)) {
-
-                                    locations.add(new Location(nextRow, nextCol, nextZindex));
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+        return neighbourList(location, radius, Neighbourhood.SQUARE_ALL_LAYERS, false);
+    }
 
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
-        }
-        return locations;
+    /**
+     * Return the number of actors of a species in the field.
+     * The counts are kept up to date as actors are placed and cleared, except
+     * during a parallel step, when they are only brought up to date at its end.
+     *
+     * @param species A species id, see {@link Species#idOf}.
+     * @return The number of actors of that species.
+     */
+    public int getCount(int species) {
+        return species < speciesCounts.length ? speciesCounts[species] : 0;
     }
 
+    /**
+     * Return the number of actors of a class in the field.
+     * The counts are kept up to date as actors are placed and cleared.
+     *
+     * @param type The class of actor.
+     * @return The number of actors of exactly that class.
+     */
+    public int getCount(Class<?> type) {
+        return getCount(Species.idOf(type));
+    }
 
     /**
      * Return the height of the field.
@@ -415,10 +1439,6 @@ public class Field {
         return height;
     }
 
-    public void setHeight(int height) {
-        this.height = height;
-    }
-
     /**
      * Return the width of the field.
      *
@@ -428,10 +1448,6 @@ public class Field {
         return width;
     }
 
-    public void setWidth(int width) {
-        this.width = width;
-    }
-
     /**
      * Return the depth of the field.
      *
@@ -441,7 +1457,28 @@ public class Field {
         return depth;
     }
 
-    public void setDepth(int depth) {
-        this.depth = depth;
+    /**
+     * A claim on a piece of food during a buffered step.
+     */
+    private static class Meal {
+        final Object eater;
+        final long priority;
+        // The cell the eater started the step in.
+        final long origin;
+        final Runnable change;
+
+        Meal(Object eater, long priority, long origin, Runnable change) {
+            this.eater = eater;
+            this.priority = priority;
+            this.origin = origin;
+            this.change = change;
+        }
+
+        /**
+         * @return true if a claim with the given priority and origin takes the food from this one.
+         */
+        boolean beatenBy(long priority, long origin) {
+            return priority > this.priority || priority == this.priority && origin > this.origin;
+        }
     }
 }
@@ -0,0 +1,182 @@
+package no.ntnu.predpreysim;
+
+/**
+ * The ways a field can lay out its cells in storage.
+ * Every layout maps a (row, col, zindex) position to a cell index of the form
+ * row * rowStride + col * colStride + zindex * layerStride, so neighbouring
+ * positions are always a fixed distance apart.
+ *
+ * @author asty
+ */
+public enum FieldLayout {
+    /**
+     * Row-major, with all the layers of one (row, col) position stored next to each
+     * other. Good for actors that look at the layers above and below them.
+     */
+    INTERLEAVED {
+        @Override
+        int rowStride(int height, int width, int depth) {
+            return width * depth;
+        }
+
+        @Override
+        int colStride(int height, int width, int depth) {
+            return depth;
+        }
+
+        @Override
+        int layerStride(int height, int width, int depth) {
+            return 1;
+        }
+    },
+
+    /**
+     * One row-major plane per layer. Good for actors that stay on their own layer.
+     */
+    PLANAR {
+        @Override
+        int rowStride(int height, int width, int depth) {
+            return width;
+        }
+
+        @Override
+        int colStride(int height, int width, int depth) {
+            return 1;
+        }
+
+        @Override
+        int layerStride(int height, int width, int depth) {
+            return height * width;
+        }
+    },
+
+    /**
+     * Like INTERLEAVED, with a ring of wall cells around every layer that is as wide
+     * as the largest tabled neighbourhood. Neighbourhood scans that fit in the ring
+     * run over fixed ranges with no bounds checks; the walls count as neither free
+     * nor occupied by any species.
+     */
+    PADDED {
+        @Override
+        int rowStride(int height, int width, int depth) {
+            return width * depth;
+        }
+
+        @Override
+        int colStride(int height, int width, int depth) {
+            return depth;
+        }
+
+        @Override
+        int layerStride(int height, int width, int depth) {
+            return 1;
+        }
+
+        @Override
+        int halo() {
+            return NeighbourTables.MAX_DISTANCE;
+        }
+    },
+
+    /**
+     * Tiles of 64 x 64 positions, all layers included, that only exist while
+     * something lives in them. For very large, sparsely populated fields.
+     * The layer, column and row each take a power-of-two number of bits of the
+     * cell index, so the index space is larger than the number of cells.
+     */
+    CHUNKED {
+        @Override
+        int rowStride(int height, int width, int depth) {
+            return 1 << (bits(width) + bits(depth));
+        }
+
+        @Override
+        int colStride(int height, int width, int depth) {
+            return 1 << bits(depth);
+        }
+
+        @Override
+        int layerStride(int height, int width, int depth) {
+            return 1;
+        }
+
+        @Override
+        boolean isDense() {
+            return false;
+        }
+
+        @Override
+        CellStore createStore(int height, int width, int depth) {
+            if (bits(width) + bits(depth) > MAX_ROW_BITS) {
+                throw new IllegalArgumentException("Unsupported field size " + height + "x" + width + "x" + depth);
+            }
+            return new ChunkedCellStore(height, width, depth, bits(depth), bits(width) + bits(depth));
+        }
+
+        @Override
+        LayerBitmap createBitmap(int height, int width) {
+            return new TiledLayerBitmap(height, width);
+        }
+    };
+
+    // The most bits a row stride may take, so that neighbourhood offsets stay ints.
+    private static final int MAX_ROW_BITS = 26;
+
+    /**
+     * @return The number of bits needed to hold the values 0 to extent - 1.
+     */
+    private static int bits(int extent) {
+        return 32 - Integer.numberOfLeadingZeros(extent - 1);
+    }
+
+    /**
+     * @return The distance between two vertically adjacent cells.
+     */
+    abstract int rowStride(int height, int width, int depth);
+
+    /**
+     * @return The distance between two horizontally adjacent cells.
+     */
+    abstract int colStride(int height, int width, int depth);
+
+    /**
+     * @return The distance between two cells at the same (row, col) on adjacent layers.
+     */
+    abstract int layerStride(int height, int width, int depth);
+
+    /**
+     * Return the width of the ring of wall cells around each layer. The sizes handed
+     * to the other methods of the layout include the ring.
+     */
+    int halo() {
+        return 0;
+    }
+
+    /**
+     * @return true if every cell index from 0 to height * width * depth - 1 is a cell.
+     */
+    boolean isDense() {
+        return true;
+    }
+
+    /**
+     * Create the storage for the actors of a field with this layout.
+     *
+     * @return An empty cell store.
+     * @throws IllegalArgumentException If the field is too large for this layout.
+     */
+    CellStore createStore(int height, int width, int depth) {
+        long size = (long) height * width * depth;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Unsupported field size " + height + "x" + width + "x" + depth);
+        }
+        return new FlatCellStore((int) size);
+    }
+
+    /**
+     * Create an empty occupancy bitmap for one layer of a field with this layout.
+     */
+    LayerBitmap createBitmap(int height, int width) {
+        return new DenseLayerBitmap(height, width);
+    }
+}
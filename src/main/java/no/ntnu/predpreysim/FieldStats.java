@@ -57,7 +57,7 @@ public class FieldStats {
         }
 
         Counter counter = counters.get(key);
-        return counter.getCount();
+        return counter == null ? 0 : counter.getCount();
     }
 
     /**
@@ -78,6 +78,16 @@ public class FieldStats {
      * @param animalClass The class of animal to increment.
      */
     public void incrementCount(Class animalClass) {
+        incrementCount(animalClass, 1);
+    }
+
+    /**
+     * Increment the count for one class of animal by the given amount.
+     *
+     * @param animalClass The class of animal to increment.
+     * @param amount      How much to add.
+     */
+    public void incrementCount(Class animalClass, int amount) {
         Counter count = counters.get(animalClass);
         if (count == null) {
             // We do not have a counter for this species yet.
@@ -85,7 +95,7 @@ public class FieldStats {
             count = new Counter(animalClass.getName());
             counters.put(animalClass, count);
         }
-        count.increment();
+        count.increment(amount);
     }
 
     /**
@@ -118,22 +128,18 @@ public class FieldStats {
 
     /**
      * Generate counts of the number of foxes and rabbits.
-     * These are not kept up to date as foxes and rabbits
-     * are placed in the field, but only when a request
-     * is made for the information.
+     * The field keeps a live count for every species as actors
+     * are placed and cleared, so this only copies those counts
+     * and does not look at the cells.
      *
      * @param field The field to generate the stats for.
      */
     private void generateCounts(Field field) {
         reset();
-        for (int row = 0; row < field.getHeight(); row++) {
-            for (int col = 0; col < field.getWidth(); col++) {
-                for (int zindex = 0; zindex < field.getDepth(); zindex++) {
-                    Object actor = field.getObjectAt(row, col, zindex);
-                    if (actor != null) {
-                        incrementCount(actor.getClass());
-                    }
-                }
+        for (int species = 0; species < Species.count(); species++) {
+            int count = field.getCount(species);
+            if (count > 0) {
+                incrementCount(Species.classOf(species), count);
             }
         }
         countsValid = true;
@@ -0,0 +1,46 @@
+package no.ntnu.predpreysim;
+
+/**
+ * Where a field keeps its cells.
+ *
+ * @author asty
+ */
+public enum FieldStorage {
+    /**
+     * Arrays on the Java heap, as chosen by the layout.
+     */
+    HEAP {
+        @Override
+        CellStore createStore(FieldLayout layout, int height, int width, int depth) {
+            return layout.createStore(height, width, depth);
+        }
+    },
+
+    /**
+     * A 32-bit actor handle per cell in direct memory, outside the Java heap.
+     * The grid puts no load on the garbage collector and is limited only by the
+     * memory of the machine; only the actors themselves live on the heap.
+     * Sparse layouts are not supported.
+     */
+    OFF_HEAP {
+        @Override
+        CellStore createStore(FieldLayout layout, int height, int width, int depth) {
+            if (!layout.isDense()) {
+                throw new IllegalArgumentException("Layout " + layout + " cannot be stored off the heap");
+            }
+            // The strides are ints, so a single layer must still be addressable by one.
+            if ((long) height * width * (layout == FieldLayout.PLANAR ? 1 : depth) > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Unsupported field size " + height + "x" + width + "x" + depth);
+            }
+            return new OffHeapCellStore((long) height * width * depth);
+        }
+    };
+
+    /**
+     * Create the storage for the actors of a field.
+     *
+     * @param layout How the cells are arranged.
+     * @return An empty cell store.
+     */
+    abstract CellStore createStore(FieldLayout layout, int height, int width, int depth);
+}
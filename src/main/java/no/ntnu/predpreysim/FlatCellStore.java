@@ -0,0 +1,56 @@
+package no.ntnu.predpreysim;
+
+import java.util.Arrays;
+
+/**
+ * A cell store that keeps every cell in one contiguous array, indexed directly by
+ * the cell index.
+ *
+ * @author asty
+ */
+class FlatCellStore implements CellStore {
+    // Storage for the actors.
+    private final Object[] cells;
+    // The shared location of each cell, created on first use.
+    private final Location[] locations;
+
+    /**
+     * Create an empty store.
+     *
+     * @param size The number of cells.
+     */
+    FlatCellStore(int size) {
+        cells = new Object[size];
+        locations = new Location[size];
+    }
+
+    @Override
+    public Object get(long cell) {
+        return cells[(int) cell];
+    }
+
+    @Override
+    public void set(long cell, Object actor) {
+        cells[(int) cell] = actor;
+    }
+
+    @Override
+    public Location location(long cell, int row, int col, int zindex) {
+        Location location = locations[(int) cell];
+        if (location == null) {
+            location = new Location(row, col, zindex);
+            locations[(int) cell] = location;
+        }
+        return location;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(cells, null);
+    }
+
+    @Override
+    public boolean isTileParallel() {
+        return true;
+    }
+}
@@ -13,7 +13,7 @@ import java.util.*;
  * @author Michael Kölling and David J. Barnes
  * @version 2016.02.29
  */
-public class GraphView implements SimulatorView
+public class GraphView implements SimulatorView, SnapshotView
 {
     private static final Color LIGHT_GRAY = new Color(0, 0, 0, 40);
 
@@ -26,8 +26,6 @@ public class GraphView implements SimulatorView
     private Set<Class> classes;
     // A map for storing colors for participants in the simulation
     private Map<Class, Color> colors;
-    // A statistics object computing and storing simulation information
-    private FieldStats stats;
 
     /**
      * Constructor.
@@ -39,7 +37,6 @@ public class GraphView implements SimulatorView
      */
     public GraphView(int width, int height, int startMax)
     {
-        stats = new FieldStats();
         classes = new HashSet<>();
         colors = new HashMap<>();
 
@@ -75,21 +72,24 @@ public class GraphView implements SimulatorView
      */
     public void showStatus(int step, Field field)
     {
-        graph.update(step, field, stats);
+        graph.update(Snapshot.of(step, field));
     }
 
-    @Override
-    public JComponent getJComponentView() {
-        return graph;
+    /**
+     * Show a snapshot of the field, drawing it on the event dispatch thread.
+     *
+     * @param snapshot The snapshot.
+     */
+    public void show(Snapshot snapshot)
+    {
+        SimulatorWindows.onEventThread(() -> graph.update(snapshot));
     }
 
     /**
-     * Determine whether the simulation should continue to run.
-     * @return true If there is more than one species alive.
+     * @return The component the graph is drawn in.
      */
-    public boolean isViable(Field field)
-    {
-        return stats.isViable(field);
+    public JComponent getJComponentView() {
+        return graph;
     }
 
     /**
@@ -97,7 +97,7 @@ public class GraphView implements SimulatorView
      */
     public void reset()
     {
-        graph.newRun();
+        SimulatorWindows.onEventThread(graph::newRun);
     }
     
     /**
@@ -176,16 +176,15 @@ public class GraphView implements SimulatorView
         /**
          * Dispay a new point of data.
          */
-        public void update(int step, Field field, FieldStats stats)
+        public void update(Snapshot snapshot)
         {
             if (classes.size() >= 2) {
                 Iterator<Class> it = classes.iterator();
                 Class class1 = it.next();
                 Class class2 = it.next();
 
-                stats.reset();
-                int count1 = stats.getPopulationCount(field, class1);
-                int count2 = stats.getPopulationCount(field, class2);
+                int count1 = snapshot.getCount(class1);
+                int count2 = snapshot.getCount(class2);
 
                 Graphics g = graphImage.getGraphics();
 
@@ -220,8 +219,8 @@ public class GraphView implements SimulatorView
 
                 repaintNow();
 
-                stepLabel.setText("" + step);
-                countLabel.setText(stats.getPopulationDetails(field));
+                stepLabel.setText("" + snapshot.getStep());
+                countLabel.setText(snapshot.getPopulationDetails());
             }
         }
 
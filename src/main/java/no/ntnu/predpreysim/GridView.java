@@ -13,7 +13,7 @@ import java.util.Map;
  * @author Michael Kölling and David J. Barnes
  * @version 2016.02.29
  */
-public class GridView extends JFrame implements SimulatorView {
+public class GridView extends JFrame implements SimulatorView, SnapshotView {
     // Colors used for empty locations.
     private static final Color EMPTY_COLOR = Color.white;
 
@@ -27,8 +27,6 @@ public class GridView extends JFrame implements SimulatorView {
 
     // A map for storing colors for participants in the simulation
     private Map<Class, Color> colors;
-    // A statistics object computing and storing simulation information
-    private FieldStats stats;
 
     /**
      * Create a view of the given width and height.
@@ -37,7 +35,6 @@ public class GridView extends JFrame implements SimulatorView {
      * @param width  The simulation's width.
      */
     public GridView(int height, int width) {
-        stats = new FieldStats();
         colors = new HashMap<>();
 
         setTitle("Fox and Rabbit Simulation");
@@ -86,52 +83,57 @@ public class GridView extends JFrame implements SimulatorView {
      * @param field The field whose status is to be displayed.
      */
     public void showStatus(int step, Field field) {
+        paint(Snapshot.of(step, field));
+    }
+
+    /**
+     * Show a snapshot of the field, drawing it on the event dispatch thread.
+     *
+     * @param snapshot The snapshot.
+     */
+    public void show(Snapshot snapshot) {
+        SimulatorWindows.onEventThread(() -> paint(snapshot));
+    }
+
+    /**
+     * Draw a snapshot of the field. Where several layers of a cell are
+     * occupied, the top one is shown.
+     */
+    private void paint(Snapshot snapshot) {
         if (!isVisible()) {
             setVisible(true);
         }
 
-        stepLabel.setText(STEP_PREFIX + step);
-        stats.reset();
+        stepLabel.setText(STEP_PREFIX + snapshot.getStep());
 
         fieldView.preparePaint();
 
-        for (int row = 0; row < field.getHeight(); row++) {
-            for (int col = 0; col < field.getWidth(); col++) {
-                boolean cellIsEmpty = true;
-                for (int zindex = 0; zindex < field.getDepth(); zindex++) {
-                    Object actor = field.getObjectAt(row, col, zindex);
-                    if (actor != null) {
-                        cellIsEmpty = false;
-                        stats.incrementCount(actor.getClass());
-                        fieldView.drawMark(col, row, getColor(actor.getClass()));
+        for (int row = 0; row < snapshot.getHeight(); row++) {
+            for (int col = 0; col < snapshot.getWidth(); col++) {
+                Color color = EMPTY_COLOR;
+                for (int zindex = 0; zindex < snapshot.getDepth(); zindex++) {
+                    int species = snapshot.getSpecies(row, col, zindex);
+                    if (species >= 0) {
+                        color = getColor(Species.classOf(species));
                     }
                 }
-                if (cellIsEmpty) {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
-                }
+                fieldView.drawMark(col, row, color);
             }
         }
-        stats.countFinished();
 
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
+        population.setText(POPULATION_PREFIX + snapshot.getPopulationDetails());
         fieldView.repaint();
     }
 
-    /**
-     * Determine whether the simulation should continue to run.
-     *
-     * @return true If there is more than one species alive.
-     */
-    public boolean isViable(Field field) {
-        return stats.isViable(field);
-    }
-
     /**
      * Prepare for a new run.
      */
     public void reset() {
     }
 
+    /**
+     * @return The component the field is drawn in.
+     */
     public JComponent getJComponentView() {
         return fieldView;
     }
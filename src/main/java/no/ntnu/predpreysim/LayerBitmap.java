@@ -0,0 +1,39 @@
+package no.ntnu.predpreysim;
+
+/**
+ * One bit per (row, col) position of a single field layer, read 64 columns
+ * to a word. Each row starts on a fresh word, so a run of columns in one row can be
+ * read with a word or two.
+ *
+ * @author asty
+ */
+interface LayerBitmap {
+    /**
+     * Set the bit of a position.
+     */
+    void set(int row, int col);
+
+    /**
+     * Clear the bit of a position.
+     */
+    void clear(int row, int col);
+
+    /**
+     * @return true if the bit of the position is set.
+     */
+    boolean get(int row, int col);
+
+    /**
+     * Return one word of a row. Bit i of word w stands for column w * 64 + i.
+     *
+     * @param row       The row.
+     * @param wordIndex Which word of the row, counted from column 0.
+     * @return The bits of the word.
+     */
+    long word(int row, int wordIndex);
+
+    /**
+     * Clear every bit.
+     */
+    void clearAll();
+}
@@ -2,26 +2,34 @@ package no.ntnu.predpreysim;
 
 /**
  * Represent a location in a rectangular grid.
+ * Locations are immutable. The row, column and layer are packed into a single
+ * long, so two locations are equal exactly when their packed values are.
+ * A field hands out one shared instance per position, see {@link Field#getLocation(long)}.
  *
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
-public class Location {
-    // Row and column positions.
-    private int row;
-    private int col;
-    private int zindex;
+public final class Location {
+    // The number of bits for the column and the layer in the packed value.
+    private static final int COL_BITS = 28;
+    private static final int ZINDEX_BITS = 8;
+    private static final long COL_MASK = (1L << COL_BITS) - 1;
+    private static final long ZINDEX_MASK = (1L << ZINDEX_BITS) - 1;
+
+    // Row, column and layer, packed as row | col | zindex from the top bits down.
+    private final long key;
 
     /**
-     * Represent a row and column.
+     * Represent a row, column and layer.
      *
-     * @param row The row.
-     * @param col The column.
+     * @param row    The row, below 2^28.
+     * @param col    The column, below 2^28.
+     * @param zindex The layer, below 2^8.
      */
     public Location(int row, int col, int zindex) {
-        this.row = row;
-        this.col = col;
-        this.zindex = zindex;
+        assert row >= 0 && col >= 0 && col <= COL_MASK && zindex >= 0 && zindex <= ZINDEX_MASK
+                : "Location out of range: " + row + "," + col + "," + zindex;
+        key = ((long) row << (COL_BITS + ZINDEX_BITS)) | ((long) col << ZINDEX_BITS) | zindex;
     }
 
     /**
@@ -29,8 +37,7 @@ public class Location {
      */
     public boolean equals(Object obj) {
         if (obj instanceof Location) {
-            Location other = (Location) obj;
-            return row == other.getRow() && col == other.getCol() && zindex == other.getZindex();
+            return key == ((Location) obj).key;
         } else {
             return false;
         }
@@ -42,50 +49,52 @@ public class Location {
      * @return A string representation of the location.
      */
     public String toString() {
-        return row + "," + col + "," + zindex;
+        return getRow() + "," + getCol() + "," + getZindex();
     }
 
     /**
-     * Use the top 16 bits for the row value and the bottom for
-     * the column. Except for very big grids, this should give a
-     * unique hash code for each (row, col) pair.
+     * Pack the row into the top 14 bits, the column into the next 14 and the
+     * layer into the bottom 4, then scramble the bits with a reversible mixer.
+     * Up to 16384 rows and columns and 16 layers, every location gets a hash
+     * code of its own, and hash tables see every bit of it change.
      *
      * @return A hashcode for the location.
      */
     public int hashCode() {
-        return (row << 16) + (col << 16) + zindex;
+        int h = (getRow() << 18) ^ (getCol() << 4) ^ getZindex();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
     }
 
     /**
-     * @return The row.
+     * @return The row, column and layer packed into one value.
      */
-    public int getRow() {
-        return row;
+    public long getKey() {
+        return key;
     }
 
-    public void setRow(int row) {
-        this.row = row;
+    /**
+     * @return The row.
+     */
+    public int getRow() {
+        return (int) (key >>> (COL_BITS + ZINDEX_BITS));
     }
 
     /**
      * @return The column.
      */
     public int getCol() {
-        return col;
-    }
-
-    public void setCol(int col) {
-        this.col = col;
+        return (int) ((key >>> ZINDEX_BITS) & COL_MASK);
     }
 
     /**
-     * @return The column.
+     * @return The layer.
      */
     public int getZindex() {
-        return zindex;
-    }
-
-    public void setZindex(int zindex) {
-        this.zindex = zindex;
+        return (int) (key & ZINDEX_MASK);
     }
 }
@@ -0,0 +1,227 @@
+package no.ntnu.predpreysim;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Precomputed neighbourhoods for the cells of a field.
+ * For every neighbourhood shape, distance and (where it matters) layer, a table holds
+ * the cell index offsets of the neighbours from the centre. Cells close to the edge of
+ * the field use clipped copies of the table, so walking a neighbourhood never needs a
+ * bounds check. Random order comes from a pool of ready-made permutations of each
+ * table size, so a walk costs one random number instead of a shuffle.
+ * <p>
+ * Walks may run on several threads at once. The pools are built from streams keyed
+ * by their size, so their contents do not depend on which walk asked first.
+ *
+ * @author asty
+ */
+class NeighbourTables {
+    // The largest distance that has tables; larger neighbourhoods are built on demand.
+    static final int MAX_DISTANCE = 8;
+    // The number of permutations kept for each table size.
+    private static final int PERMUTATIONS = 256;
+
+    private final int height, width;
+    private final Random rand;
+    // The tables, by neighbourhood, distance and layer of the centre.
+    private final Table[][][] tables;
+    // The permutation pools, by table size.
+    private Pool[] permutations = new Pool[64];
+
+    /**
+     * Prepare tables for a field with the given geometry.
+     *
+     * @param height      The height of the field.
+     * @param width       The width of the field.
+     * @param depth       The number of layers in the field.
+     * @param rowStride   The cell index distance between adjacent rows.
+     * @param colStride   The cell index distance between adjacent columns.
+     * @param layerStride The cell index distance between adjacent layers.
+     * @param rand        Picks the permutation of each walk.
+     */
+    NeighbourTables(int height, int width, int depth, int rowStride, int colStride, int layerStride, Random rand) {
+        this.height = height;
+        this.width = width;
+        this.rand = rand;
+        Neighbourhood[] shapes = Neighbourhood.values();
+        tables = new Table[shapes.length][MAX_DISTANCE + 1][];
+        for (Neighbourhood shape : shapes) {
+            for (int distance = 0; distance <= MAX_DISTANCE; distance++) {
+                int layers = shape.spansLayers() ? depth : 1;
+                Table[] byLayer = new Table[layers];
+                for (int zindex = 0; zindex < layers; zindex++) {
+                    byLayer[zindex] = new Table(shape, distance, zindex, depth, rowStride, colStride, layerStride);
+                }
+                tables[shape.ordinal()][distance] = byLayer;
+            }
+        }
+    }
+
+    /**
+     * Walk the neighbourhood of a cell in random order until the visitor stops.
+     *
+     * @param field         The field being walked.
+     * @param cell          The centre of the neighbourhood.
+     * @param row           The row of the centre.
+     * @param col           The column of the centre.
+     * @param zindex        The layer of the centre.
+     * @param distance      The size of the neighbourhood, at most MAX_DISTANCE.
+     * @param neighbourhood The shape of the neighbourhood.
+     * @param visitor       Receives the cells of the neighbourhood.
+     * @return The cell at which the visitor stopped, or Field.NO_CELL if it visited them all.
+     */
+    long visit(Field field, long cell, int row, int col, int zindex, int distance,
+               Neighbourhood neighbourhood, CellVisitor visitor) {
+        Table[] byLayer = tables[neighbourhood.ordinal()][distance];
+        Table table = byLayer[byLayer.length == 1 ? 0 : zindex];
+        int up = Math.min(row, distance);
+        int down = Math.min(height - 1 - row, distance);
+        int left = Math.min(col, distance);
+        int right = Math.min(width - 1 - col, distance);
+        if (up < distance || down < distance || left < distance || right < distance) {
+            table = table.clipped(up, down, left, right);
+        }
+        int[] deltas = table.deltas;
+        int size = deltas.length;
+        if (size == 0) {
+            return Field.NO_CELL;
+        }
+        int[] order = permutation(size);
+        for (int i = 0; i < size; i++) {
+            long next = cell + deltas[order[i]];
+            if (visitor.visit(field, next)) {
+                return next;
+            }
+        }
+        return Field.NO_CELL;
+    }
+
+    /**
+     * Pick a random permutation of the given size from the pool.
+     */
+    private int[] permutation(int size) {
+        Pool[] pools = permutations;
+        Pool pool = size < pools.length ? pools[size] : null;
+        if (pool == null) {
+            pool = createPool(size);
+        }
+        int[][] orders = pool.orders;
+        return orders.length == 1 ? orders[0] : orders[rand.nextInt(orders.length)];
+    }
+
+    /**
+     * Build the permutation pool of the given size, unless another walk already has.
+     */
+    private synchronized Pool createPool(int size) {
+        if (size >= permutations.length) {
+            permutations = Arrays.copyOf(permutations, Math.max(size + 1, permutations.length * 2));
+        }
+        Pool pool = permutations[size];
+        if (pool == null) {
+            Random source = Randomizer.newStream(size);
+            int[][] orders = new int[size == 1 ? 1 : PERMUTATIONS][];
+            for (int p = 0; p < orders.length; p++) {
+                int[] order = new int[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+                for (int i = size; i > 1; i--) {
+                    int j = source.nextInt(i);
+                    int swap = order[i - 1];
+                    order[i - 1] = order[j];
+                    order[j] = swap;
+                }
+                orders[p] = order;
+            }
+            pool = new Pool(orders);
+            permutations[size] = pool;
+        }
+        return pool;
+    }
+
+    /**
+     * The permutations of one size. Holding them in a final field makes them safe
+     * to read on threads that did not build them.
+     */
+    private static class Pool {
+        final int[][] orders;
+
+        Pool(int[][] orders) {
+            this.orders = orders;
+        }
+    }
+
+    /**
+     * The offsets of one neighbourhood, in row, column, layer order.
+     */
+    private static class Table {
+        // The cell index offsets of the neighbours.
+        final int[] deltas;
+        // The row and column offsets of each neighbour, for clipping.
+        final int[] roffsets, coffsets;
+        // The size of the neighbourhood.
+        final int distance;
+        // Clipped copies, by how far the neighbourhood reaches up, down, left and right.
+        private Table[] clipped;
+
+        Table(Neighbourhood shape, int distance, int zindex, int depth, int rowStride, int colStride, int layerStride) {
+            int capacity = shape.capacity(distance, depth);
+            int[] d = new int[capacity], r = new int[capacity], c = new int[capacity];
+            int count = 0;
+            int firstZ = shape.spansLayers() ? 0 : zindex;
+            int lastZ = shape.spansLayers() ? depth - 1 : zindex;
+            for (int roffset = -distance; roffset <= distance; roffset++) {
+                for (int coffset = -distance; coffset <= distance; coffset++) {
+                    for (int nextZindex = firstZ; nextZindex <= lastZ; nextZindex++) {
+                        int zoffset = nextZindex - zindex;
+                        if (shape.includes(roffset, coffset, zoffset, distance)) {
+                            d[count] = roffset * rowStride + coffset * colStride + zoffset * layerStride;
+                            r[count] = roffset;
+                            c[count] = coffset;
+                            count++;
+                        }
+                    }
+                }
+            }
+            this.distance = distance;
+            deltas = Arrays.copyOf(d, count);
+            roffsets = Arrays.copyOf(r, count);
+            coffsets = Arrays.copyOf(c, count);
+        }
+
+        private Table(int distance, int[] deltas, int[] roffsets, int[] coffsets) {
+            this.distance = distance;
+            this.deltas = deltas;
+            this.roffsets = roffsets;
+            this.coffsets = coffsets;
+        }
+
+        /**
+         * Return this table without the neighbours that reach further than given.
+         */
+        Table clipped(int up, int down, int left, int right) {
+            int span = distance + 1;
+            int key = ((up * span + down) * span + left) * span + right;
+            if (clipped == null) {
+                clipped = new Table[span * span * span * span];
+            }
+            Table table = clipped[key];
+            if (table == null) {
+                int[] d = new int[deltas.length], r = new int[deltas.length], c = new int[deltas.length];
+                int count = 0;
+                for (int i = 0; i < deltas.length; i++) {
+                    if (roffsets[i] >= -up && roffsets[i] <= down && coffsets[i] >= -left && coffsets[i] <= right) {
+                        d[count] = deltas[i];
+                        r[count] = roffsets[i];
+                        c[count] = coffsets[i];
+                        count++;
+                    }
+                }
+                table = new Table(distance, Arrays.copyOf(d, count), Arrays.copyOf(r, count), Arrays.copyOf(c, count));
+                clipped[key] = table;
+            }
+            return table;
+        }
+    }
+}
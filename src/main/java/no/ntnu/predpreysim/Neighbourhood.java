@@ -0,0 +1,98 @@
+package no.ntnu.predpreysim;
+
+/**
+ * The shapes of neighbourhood that can be walked around a position in a field.
+ * A neighbourhood is a square of positions around the centre, measured in rows and
+ * columns, on one or more layers.
+ *
+ * @author asty
+ */
+public enum Neighbourhood {
+    /**
+     * The positions at exactly the given distance, on the layer of the centre.
+     * A distance of zero gives the centre itself.
+     */
+    RING_ON_LAYER(true, false, false),
+
+    /**
+     * The positions at exactly the given distance, on every layer except that of the centre.
+     */
+    RING_OTHER_LAYERS(true, true, false),
+
+    /**
+     * All positions within the given distance, on the layer of the centre,
+     * except the centre itself.
+     */
+    SQUARE_ON_LAYER(false, false, false),
+
+    /**
+     * All positions within the given distance, on every layer, except the centre itself.
+     */
+    SQUARE_ALL_LAYERS(false, true, true);
+
+    // Whether only the outer ring of the square is included.
+    private final boolean ring;
+    // Whether the other layers are included.
+    private final boolean otherLayers;
+    // Whether the layer of the centre is included.
+    private final boolean ownLayer;
+
+    Neighbourhood(boolean ring, boolean otherLayers, boolean ownLayerWithOthers) {
+        this.ring = ring;
+        this.otherLayers = otherLayers;
+        this.ownLayer = !otherLayers || ownLayerWithOthers;
+    }
+
+    /**
+     * Decide whether a position belongs to this neighbourhood.
+     *
+     * @param roffset  The row offset from the centre.
+     * @param coffset  The column offset from the centre.
+     * @param zoffset  The layer offset from the centre.
+     * @param distance The size of the neighbourhood.
+     * @return true if the position is part of the neighbourhood.
+     */
+    boolean includes(int roffset, int coffset, int zoffset, int distance) {
+        int reach = Math.max(Math.abs(roffset), Math.abs(coffset));
+        if (reach > distance || (ring && reach < distance)) {
+            return false;
+        }
+        if (zoffset == 0) {
+            return ownLayer && (ring || reach > 0);
+        }
+        return otherLayers;
+    }
+
+    /**
+     * @return true if only the outer ring of the square is included.
+     */
+    boolean isRing() {
+        return ring;
+    }
+
+    /**
+     * @return true if the neighbourhood includes positions on the layer of the centre.
+     */
+    boolean includesOwnLayer() {
+        return ownLayer;
+    }
+
+    /**
+     * @return true if the neighbourhood may include layers other than that of the centre.
+     */
+    boolean spansLayers() {
+        return otherLayers;
+    }
+
+    /**
+     * Return the most positions the neighbourhood can hold in a field of the given depth.
+     *
+     * @param distance The size of the neighbourhood.
+     * @param depth    The number of layers in the field.
+     * @return An upper bound on the size of the neighbourhood.
+     */
+    int capacity(int distance, int depth) {
+        int side = 2 * distance + 1;
+        return otherLayers ? side * side * depth : side * side;
+    }
+}
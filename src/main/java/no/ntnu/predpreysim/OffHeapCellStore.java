@@ -0,0 +1,110 @@
+package no.ntnu.predpreysim;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A cell store that keeps an actor handle per cell in direct buffers, outside the
+ * Java heap. The actors are found through an {@link ActorRegistry}. A handle is
+ * registered when an actor is put in a cell and released when it leaves, so the
+ * registry only holds the actors that are in the field.
+ * <p>
+ * The cells are split over segments, since a single buffer is limited to 2 GB.
+ *
+ * @author asty
+ */
+class OffHeapCellStore implements CellStore {
+    // The number of bits of a cell index within a segment.
+    static final int SEGMENT_BITS = 28;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    // The handles, four bytes per cell.
+    private final ByteBuffer[] segments;
+    // The actors behind the handles.
+    private final ActorRegistry registry = new ActorRegistry();
+
+    /**
+     * Create an empty store.
+     *
+     * @param size The number of cells.
+     */
+    OffHeapCellStore(long size) {
+        this(allocate(size));
+    }
+
+    /**
+     * Create a store over the given segments, which must be zeroed. Each segment
+     * but the last holds 2^SEGMENT_BITS cells. The segments may be mapped from a file.
+     *
+     * @param segments The buffers to keep the handles in.
+     */
+    OffHeapCellStore(ByteBuffer[] segments) {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = segments[i].order(ByteOrder.nativeOrder());
+        }
+        this.segments = segments;
+    }
+
+    /**
+     * @return Zeroed direct segments for the given number of cells.
+     */
+    static ByteBuffer[] allocate(long size) {
+        ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long cells = Math.min(size - ((long) i << SEGMENT_BITS), 1L << SEGMENT_BITS);
+            segments[i] = ByteBuffer.allocateDirect((int) cells * Integer.BYTES);
+        }
+        return segments;
+    }
+
+    @Override
+    public Object get(long cell) {
+        return registry.get(handle(cell));
+    }
+
+    @Override
+    public void set(long cell, Object actor) {
+        int previous = handle(cell);
+        if (previous != ActorRegistry.NO_HANDLE) {
+            registry.release(previous);
+        }
+        int handle = actor == null ? ActorRegistry.NO_HANDLE : registry.register(actor);
+        segments[(int) (cell >>> SEGMENT_BITS)].putInt((int) (cell & SEGMENT_MASK) * Integer.BYTES, handle);
+    }
+
+    @Override
+    public Location location(long cell, int row, int col, int zindex) {
+        int handle = handle(cell);
+        if (handle == ActorRegistry.NO_HANDLE) {
+            return new Location(row, col, zindex);
+        }
+        return registry.location(handle, row, col, zindex);
+    }
+
+    @Override
+    public void clear() {
+        for (ByteBuffer segment : segments) {
+            int offset = 0;
+            for (; offset + Long.BYTES <= segment.capacity(); offset += Long.BYTES) {
+                segment.putLong(offset, 0);
+            }
+            if (offset < segment.capacity()) {
+                segment.putInt(offset, ActorRegistry.NO_HANDLE);
+            }
+        }
+        registry.clear();
+    }
+
+    @Override
+    public boolean isTileParallel() {
+        // The handle registry is shared by all cells.
+        return false;
+    }
+
+    /**
+     * @return The handle stored in a cell.
+     */
+    private int handle(long cell) {
+        return segments[(int) (cell >>> SEGMENT_BITS)].getInt((int) (cell & SEGMENT_MASK) * Integer.BYTES);
+    }
+}
@@ -0,0 +1,103 @@
+package no.ntnu.predpreysim;
+
+/**
+ * Decides after which steps a simulator updates its views and its loggers.
+ * Output can be made every step, every so many steps, or, for the views, as
+ * often as a target frame rate allows. On the other steps nothing is counted,
+ * drawn or written.
+ *
+ * @author asty
+ */
+public class OutputPolicy {
+    // Update the views every this many steps; 0 for never, or when they follow a frame rate.
+    private final int renderEvery;
+    // Log every this many steps; 0 for never.
+    private final int logEvery;
+    // The least time between two updates of the views, in nanoseconds.
+    private final long frameInterval;
+    // When the views were last updated, from System.nanoTime().
+    private long lastFrame;
+    // Whether the views have been updated yet.
+    private boolean rendered;
+
+    private OutputPolicy(int renderEvery, int logEvery, long frameInterval) {
+        this.renderEvery = renderEvery;
+        this.logEvery = logEvery;
+        this.frameInterval = frameInterval;
+    }
+
+    /**
+     * @return A policy that updates the views and logs after every step.
+     */
+    public static OutputPolicy everyStep() {
+        return every(1, 1);
+    }
+
+    /**
+     * @return A policy that never updates the views or logs, for batch runs.
+     */
+    public static OutputPolicy none() {
+        return new OutputPolicy(0, 0, 0);
+    }
+
+    /**
+     * Return a policy that updates the views and logs every so many steps.
+     *
+     * @param renderEvery Update the views every this many steps.
+     * @param logEvery    Log every this many steps.
+     * @return The policy.
+     */
+    public static OutputPolicy every(int renderEvery, int logEvery) {
+        if (renderEvery < 1 || logEvery < 1) {
+            throw new IllegalArgumentException("Output must be made every one or more steps");
+        }
+        return new OutputPolicy(renderEvery, logEvery, 0);
+    }
+
+    /**
+     * Return a policy that updates the views at most a number of times a second,
+     * however fast the simulation runs, and logs every so many steps.
+     *
+     * @param framesPerSecond The most updates of the views a second.
+     * @param logEvery        Log every this many steps.
+     * @return The policy.
+     */
+    public static OutputPolicy atFrameRate(double framesPerSecond, int logEvery) {
+        if (!(framesPerSecond > 0)) {
+            throw new IllegalArgumentException("The frame rate must be positive: " + framesPerSecond);
+        }
+        if (logEvery < 1) {
+            throw new IllegalArgumentException("Output must be made every one or more steps");
+        }
+        return new OutputPolicy(0, logEvery, (long) (1e9 / framesPerSecond));
+    }
+
+    /**
+     * Tell whether the views are to be updated after a step.
+     *
+     * @param step The step just taken.
+     * @return true if the views are to be updated.
+     */
+    public boolean shouldRender(int step) {
+        if (frameInterval == 0) {
+            return renderEvery > 0 && step % renderEvery == 0;
+        }
+        long now = System.nanoTime();
+        if (rendered && now - lastFrame < frameInterval) {
+            return false;
+        }
+        rendered = true;
+        lastFrame = now;
+        return true;
+    }
+
+    /**
+     * Tell whether the loggers are to record a step.
+     *
+     * @param step The step just taken.
+     * @return true if the step is to be logged.
+     */
+    public boolean shouldLog(int step) {
+        return logEvery > 0 && step % logEvery == 0;
+    }
+}
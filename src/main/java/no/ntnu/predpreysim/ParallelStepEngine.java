@@ -0,0 +1,275 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Actor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Lets the actors act on several threads at once. The field is cut into square
+ * tiles coloured like a four-colour checkerboard, and the step runs in four phases,
+ * one per colour. Two tiles of the same colour are always a whole tile apart, so
+ * while actors reach no further than REACH the actors of one phase never read or
+ * write the same cells, bitmap words or storage blocks.
+ * <p>
+ * Each actor acts in the tile it started the step in, in list order within the tile.
+ * The list itself keeps its order, with the newborns appended tile by tile.
+ * Each tile draws its random numbers from a stream of its own, keyed by the run
+ * seed, the step and the tile, so the outcome does not depend on how the threads are scheduled: running
+ * the same tiles one at a time, see {@link #sequential()}, gives the same field.
+ * <p>
+ * The outcome differs from that of {@link SequentialStepEngine} by design, and
+ * cannot be compared with it cell for cell: that engine lets the actors act in
+ * list order rather than tile by tile, and draws every number from one stream
+ * rather than one per tile, so the same start leads to another, equally likely,
+ * run. The parallel engine is checked against its own schedule run on one
+ * thread instead, see {@link #compare}.
+ *
+ * @author asty
+ */
+public class ParallelStepEngine implements StepEngine {
+    // The height and width of a tile. Tiles of one colour must not share a 64-position
+    // bitmap word or storage block, so this is a multiple of 128.
+    public static final int TILE_SIZE = 128;
+    // How far an actor may reach from its cell during a parallel step.
+    public static final int REACH = TILE_SIZE / 2 - 1;
+
+    // The pool that runs the tiles, or null to run them on the calling thread.
+    private final ForkJoinPool pool;
+    // The actors of each tile, and the actors born in each tile, reused from step to step.
+    private List<List<Actor>> tileActors = newLists(0);
+    private List<List<Actor>> tileBorn = newLists(0);
+
+    /**
+     * Create an engine that runs on the common pool.
+     */
+    public ParallelStepEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create an engine that runs on the given pool.
+     *
+     * @param pool The pool to run the tiles on, or null to run them one at a time
+     *             on the calling thread.
+     */
+    public ParallelStepEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Create an engine that runs the same tiles and phases one at a time on the
+     * calling thread. It gives exactly the results of the parallel engine, so it is
+     * what the parallel engine is checked against.
+     *
+     * @return A single-threaded engine.
+     */
+    public static ParallelStepEngine sequential() {
+        return new ParallelStepEngine(null);
+    }
+
+    @Override
+    public void step(int step, Field field, List<Actor> actors, List<Actor> newActors) {
+        int halo = field.getHalo();
+        // Tiles are laid over the bitmap coordinates, which include the ring of walls.
+        int tilesHigh = (field.getHeight() + 2 * halo + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesWide = (field.getWidth() + 2 * halo + TILE_SIZE - 1) / TILE_SIZE;
+        int tiles = tilesHigh * tilesWide;
+        if (tileActors.size() != tiles) {
+            tileActors = newLists(tiles);
+            tileBorn = newLists(tiles);
+        }
+        List<Actor> unplaced = new ArrayList<>();
+        for (Actor actor : actors) {
+            Location location = actor.getLocation();
+            if (location == null) {
+                unplaced.add(actor);
+            } else {
+                int tile = (location.getRow() + halo) / TILE_SIZE * tilesWide + (location.getCol() + halo) / TILE_SIZE;
+                tileActors.get(tile).add(actor);
+            }
+        }
+
+        // The tiles run on other threads, so they are told which run they belong to.
+        long seed = Randomizer.getSeed();
+        field.beginConcurrent(REACH);
+        try {
+            for (int colour = 0; colour < 4; colour++) {
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (int tileRow = colour >> 1; tileRow < tilesHigh; tileRow += 2) {
+                    for (int tileCol = colour & 1; tileCol < tilesWide; tileCol += 2) {
+                        int tile = tileRow * tilesWide + tileCol;
+                        if (!tileActors.get(tile).isEmpty()) {
+                            tasks.add(() -> {
+                                actTile(seed, step, tile);
+                                return null;
+                            });
+                        }
+                    }
+                }
+                run(tasks);
+            }
+        } finally {
+            field.endConcurrent();
+        }
+
+        // Actors outside the field act last, on this thread.
+        List<Actor> unplacedBorn = new ArrayList<>();
+        for (Actor actor : unplaced) {
+            actor.act(unplacedBorn);
+        }
+
+        // The survivors keep their places in the list; only the tiles they act in are regrouped.
+        List<Actor> survivors = new ArrayList<>(actors.size());
+        keepActive(actors, survivors);
+        actors.clear();
+        actors.addAll(survivors);
+        for (int tile = 0; tile < tiles; tile++) {
+            newActors.addAll(tileBorn.get(tile));
+            tileActors.get(tile).clear();
+            tileBorn.get(tile).clear();
+        }
+        newActors.addAll(unplacedBorn);
+        actors.addAll(newActors);
+    }
+
+    /**
+     * Let the actors of one tile act, drawing from the stream of the tile in the run.
+     */
+    private void actTile(long seed, int step, int tile) {
+        Randomizer.Stream previous = Randomizer.bind(Randomizer.newStream(seed, (long) step << 32 | tile));
+        try {
+            List<Actor> born = tileBorn.get(tile);
+            for (Actor actor : tileActors.get(tile)) {
+                actor.act(born);
+            }
+        } finally {
+            Randomizer.bind(previous);
+        }
+    }
+
+    /**
+     * Run the tasks of one phase and wait for all of them.
+     */
+    private void run(List<Callable<Void>> tasks) {
+        if (pool == null || tasks.size() < 2) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return;
+        }
+        for (Future<Void> result : pool.invokeAll(tasks)) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted during a parallel step", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    /**
+     * Copy the actors that are still active. The others are not pooled: newborns
+     * in tiles are made new, since the pools of the field are not shared
+     * between threads.
+     */
+    private static void keepActive(List<Actor> from, List<Actor> to) {
+        for (Actor actor : from) {
+            if (actor.isActive()) {
+                to.add(actor);
+            }
+        }
+    }
+
+    private static List<List<Actor>> newLists(int count) {
+        List<List<Actor>> lists = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lists.add(new ArrayList<>());
+        }
+        return lists;
+    }
+
+    /**
+     * Run the same simulation twice, side by side: once with a parallel engine on
+     * the given pool and once with the sequential version of the engine, and compare
+     * the fields after every step. The sequential version is {@link #sequential()},
+     * not {@link SequentialStepEngine}, whose runs differ by design.
+     *
+     * @param height The height of the field.
+     * @param width  The width of the field.
+     * @param depth  The number of layers.
+     * @param layout How the cells are arranged in storage.
+     * @param steps  The number of steps to run.
+     * @param pool   The pool for the parallel run.
+     * @return The first step after which the fields differ, or 0 if they never do.
+     */
+    public static int compare(int height, int width, int depth, FieldLayout layout, int steps, ForkJoinPool pool) {
+        Field parallelField = new Field(height, width, depth, layout);
+        Field sequentialField = new Field(height, width, depth, layout);
+        List<Actor> parallelActors = new ArrayList<>();
+        List<Actor> sequentialActors = new ArrayList<>();
+        Randomizer.reset();
+        new PopulationGenerator().populate(parallelField, parallelActors);
+        Randomizer.reset();
+        new PopulationGenerator().populate(sequentialField, sequentialActors);
+        StepEngine parallel = new ParallelStepEngine(pool);
+        StepEngine sequential = sequential();
+        for (int step = 1; step <= steps; step++) {
+            parallel.step(step, parallelField, parallelActors, new ArrayList<>());
+            sequential.step(step, sequentialField, sequentialActors, new ArrayList<>());
+            if (!sameContents(parallelField, sequentialField) || parallelActors.size() != sequentialActors.size()) {
+                return step;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if every cell of the two fields holds an actor of the same class, or none.
+     */
+    private static boolean sameContents(Field first, Field second) {
+        for (int row = 0; row < first.getHeight(); row++) {
+            for (int col = 0; col < first.getWidth(); col++) {
+                for (int zindex = 0; zindex < first.getDepth(); zindex++) {
+                    Object a = first.getObjectAt(row, col, zindex);
+                    Object b = second.getObjectAt(row, col, zindex);
+                    if (a == null ? b != null : b == null || a.getClass() != b.getClass()) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return Arrays.equals(counts(first), counts(second));
+    }
+
+    /**
+     * @return The species counts of a field.
+     */
+    private static int[] counts(Field field) {
+        int[] counts = new int[Species.count()];
+        for (int id = 0; id < counts.length; id++) {
+            counts[id] = field.getCount(id);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,222 @@
+package no.ntnu.predpreysim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Explores how the simulation depends on its parameters. Each factor is a
+ * parameter varied over a range; a design is a list of points, each giving a
+ * value to every factor. The sweep runs one simulation per point, in parallel
+ * on a work-stealing pool, and summarises each run in a row of a
+ * {@link SweepResult}.
+ * <p>
+ * A design can be a full grid, with every combination of evenly spaced levels,
+ * or a Latin hypercube, which covers the range of every factor with far fewer
+ * points. All points start from the same base parameters and the same seed,
+ * so they differ only in their factors.
+ * <p>
+ * For example, to vary how long foxes live and how often rabbits breed:
+ * <pre>
+ * ParameterSweep sweep = new ParameterSweep(80, 120, 3, 500);
+ * sweep.addFactor("FoxMaxAge", 50, 150, (p, v) -&gt; p.of(Fox.class).setMaxAge((int) Math.round(v)));
+ * sweep.addFactor("RabbitBreeding", 0.02, 0.1, (p, v) -&gt; p.of(Rabbit.class).setBreedingProbability(v));
+ * SweepResult result = sweep.run(sweep.latinHypercube(40, 7), 1);
+ * </pre>
+ *
+ * @author asty
+ */
+public class ParameterSweep {
+    /**
+     * Applies the value of a factor to the parameters of a run.
+     */
+    public interface Setting {
+        /**
+         * @param parameters The parameters of the run, to be changed.
+         * @param value      The value of the factor.
+         */
+        void apply(SimulationParameters parameters, double value);
+    }
+
+    // The size of the field.
+    private final int height;
+    private final int width;
+    private final int depth;
+    // The number of steps of each run.
+    private final int steps;
+    // The names, ranges and settings of the factors.
+    private final List<String> names = new ArrayList<>();
+    private final List<double[]> ranges = new ArrayList<>();
+    private final List<Setting> settings = new ArrayList<>();
+    // The parameters every point starts from.
+    private SimulationParameters base = SimulationParameters.defaults();
+    // The species whose populations are summarised.
+    private Class<?>[] species = BatchRunner.DEFAULT_SPECIES;
+
+    /**
+     * Create a sweep with no factors.
+     *
+     * @param height Height of the field.
+     * @param width  Width of the field.
+     * @param depth  Depth of the field.
+     * @param steps  The number of steps of each run.
+     */
+    public ParameterSweep(int height, int width, int depth, int steps) {
+        this.height = height;
+        this.width = width;
+        this.depth = depth;
+        this.steps = steps;
+    }
+
+    /**
+     * Add a factor to vary.
+     *
+     * @param name    The name of the factor, used in the summary.
+     * @param low     The lowest value.
+     * @param high    The highest value.
+     * @param setting How the value changes the parameters of a run.
+     */
+    public void addFactor(String name, double low, double high, Setting setting) {
+        if (low > high) {
+            throw new IllegalArgumentException("Empty range for " + name + ": " + low + " to " + high);
+        }
+        names.add(name);
+        ranges.add(new double[]{low, high});
+        settings.add(setting);
+    }
+
+    /**
+     * Choose the parameters every point starts from. The defaults of the
+     * species classes are used unless told otherwise.
+     *
+     * @param base The parameters; each run changes a copy.
+     */
+    public void setBaseParameters(SimulationParameters base) {
+        this.base = base.copy();
+    }
+
+    /**
+     * Choose the species whose populations are summarised.
+     *
+     * @param species The classes of actor.
+     */
+    public void setSpecies(Class<?>... species) {
+        this.species = species.clone();
+    }
+
+    /**
+     * Make a full grid design: every combination of the given number of
+     * levels of each factor, spread evenly from its lowest to its highest value.
+     *
+     * @param levels The number of levels of each factor; at least 1.
+     * @return The points, each with a value for every factor.
+     */
+    public double[][] grid(int levels) {
+        if (levels < 1) {
+            throw new IllegalArgumentException("A grid needs at least one level: " + levels);
+        }
+        int factors = names.size();
+        int points = 1;
+        for (int f = 0; f < factors; f++) {
+            points = Math.multiplyExact(points, levels);
+        }
+        double[][] design = new double[points][factors];
+        for (int point = 0; point < points; point++) {
+            int rest = point;
+            for (int f = factors - 1; f >= 0; f--) {
+                int level = rest % levels;
+                rest /= levels;
+                double[] range = ranges.get(f);
+                double share = levels == 1 ? 0.5 : (double) level / (levels - 1);
+                design[point][f] = range[0] + share * (range[1] - range[0]);
+            }
+        }
+        return design;
+    }
+
+    /**
+     * Make a Latin hypercube design: the range of each factor is cut into as
+     * many equal strata as there are points, and every stratum of every factor
+     * gets exactly one point, at a random place within it. The strata of the
+     * factors are matched up at random.
+     *
+     * @param points The number of points.
+     * @param seed   The seed of the random choices, so a design can be made again.
+     * @return The points, each with a value for every factor.
+     */
+    public double[][] latinHypercube(int points, long seed) {
+        if (points < 1) {
+            throw new IllegalArgumentException("A design needs at least one point: " + points);
+        }
+        Random random = new Random(seed);
+        int factors = names.size();
+        double[][] design = new double[points][factors];
+        int[] strata = new int[points];
+        for (int f = 0; f < factors; f++) {
+            for (int i = 0; i < points; i++) {
+                strata[i] = i;
+            }
+            for (int i = points - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = strata[i];
+                strata[i] = strata[j];
+                strata[j] = swap;
+            }
+            double[] range = ranges.get(f);
+            for (int point = 0; point < points; point++) {
+                double share = (strata[point] + random.nextDouble()) / points;
+                design[point][f] = range[0] + share * (range[1] - range[0]);
+            }
+        }
+        return design;
+    }
+
+    /**
+     * Run one simulation for each point of a design, using as many threads as
+     * there are processors.
+     *
+     * @param design The points, each with a value for every factor.
+     * @param seed   The seed of every run.
+     * @return The summary of every point.
+     */
+    public SweepResult run(double[][] design, long seed) {
+        return run(design, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Run one simulation for each point of a design.
+     *
+     * @param design  The points, each with a value for every factor.
+     * @param seed    The seed of every run.
+     * @param threads The largest number of runs to make at once.
+     * @return The summary of every point.
+     */
+    public SweepResult run(double[][] design, long seed, int threads) {
+        for (double[] point : design) {
+            if (point.length != names.size()) {
+                throw new IllegalArgumentException("A point has " + point.length + " values for "
+                        + names.size() + " factors");
+            }
+        }
+        SweepResult result = new SweepResult(names.toArray(new String[0]), species, design);
+        ExecutorService pool = Executors.newWorkStealingPool(Math.max(1, threads));
+        BatchRunner.runAll(pool, design.length, point -> simulate(design[point], seed, point, result),
+                "a parameter sweep");
+        return result;
+    }
+
+    /**
+     * Make the run of one point on the current thread and summarise it.
+     */
+    private void simulate(double[] values, long seed, int point, SweepResult result) {
+        SimulationParameters parameters = base.copy();
+        for (int f = 0; f < values.length; f++) {
+            settings.get(f).apply(parameters, values[f]);
+        }
+        int[][] series = BatchRunner.populations(seed,
+                () -> new Simulator(height, width, depth, Field.DEFAULT_LAYOUT, parameters), species, steps);
+        result.record(point, series);
+    }
+}
@@ -1,6 +1,6 @@
 package no.ntnu.predpreysim;
 
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * @author asty
@@ -8,11 +8,17 @@ import java.util.List;
 public class PredPreySim {
 
     /**
+     * Run a long simulation. The windows are left out when the first argument
+     * is --headless, or when Java runs headless.
+     *
      * @param args the command line arguments
      */
     public static void main(String[] args) {
 
         Simulator sim = new Simulator();
+        if (!Arrays.asList(args).contains("--headless") && !Boolean.getBoolean("java.awt.headless")) {
+            new SimulatorWindows(sim);
+        }
         sim.runLongSimulation();
 //        System.exit(0);
     }
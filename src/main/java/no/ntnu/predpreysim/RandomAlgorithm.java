@@ -0,0 +1,325 @@
+package no.ntnu.predpreysim;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The algorithms the random streams of {@link Randomizer} can draw with. Each
+ * produces 32 random bits at a time, and a stream turns those into doubles and
+ * ints the way java.util.Random does. The 64-bit generators hand out the two
+ * halves of each 64-bit output in turn.
+ * <p>
+ * LCG is the generator of java.util.Random and the default, so runs are the
+ * same as they have always been. The others are faster and pass statistical
+ * tests the LCG fails, but give other runs.
+ *
+ * @author asty
+ */
+public enum RandomAlgorithm {
+    /**
+     * The 48-bit linear congruential generator of java.util.Random.
+     */
+    LCG {
+        @Override
+        Generator create() {
+            return new Lcg();
+        }
+    },
+    /**
+     * SplitMix64: a counter run through a 64-bit mixing function.
+     */
+    SPLITMIX64 {
+        @Override
+        Generator create() {
+            return new SplitMix64();
+        }
+    },
+    /**
+     * xoroshiro128++: 128 bits of state stepped by xor, shift and rotate.
+     */
+    XOROSHIRO128PP {
+        @Override
+        Generator create() {
+            return new Xoroshiro128PlusPlus();
+        }
+    },
+    /**
+     * PCG-XSH-RR: a 64-bit linear congruential generator whose output is
+     * permuted down to 32 bits.
+     */
+    PCG32 {
+        @Override
+        Generator create() {
+            return new Pcg32();
+        }
+    };
+
+    /**
+     * @return A new generator of this algorithm; seed it before use.
+     */
+    abstract Generator create();
+
+    /**
+     * A source of random bits.
+     */
+    abstract static class Generator {
+        // The number of bytes write writes, for every algorithm.
+        static final int STATE_SIZE = 8 + 8 + 4 + 1;
+
+        /**
+         * Restart the generator from a seed.
+         */
+        abstract void seed(long seed);
+
+        /**
+         * Write the state of the generator, in STATE_SIZE bytes.
+         */
+        abstract void write(ByteBuffer out);
+
+        /**
+         * Restore a state written by write.
+         */
+        abstract void read(ByteBuffer in);
+
+        /**
+         * @return The next 32 random bits.
+         */
+        abstract int nextInt();
+
+        /**
+         * Fill a buffer with the next random ints, in the order nextInt would
+         * return them.
+         *
+         * @param buffer The buffer.
+         */
+        void fill(int[] buffer) {
+            for (int i = 0; i < buffer.length; i++) {
+                buffer[i] = nextInt();
+            }
+        }
+    }
+
+    /**
+     * The generator of java.util.Random, without its compare-and-set.
+     */
+    private static final class Lcg extends Generator {
+        private static final long MULTIPLIER = 0x5DEECE66DL;
+        private static final long ADDEND = 0xBL;
+        private static final long MASK = (1L << 48) - 1;
+
+        private long state;
+
+        @Override
+        void seed(long seed) {
+            state = (seed ^ MULTIPLIER) & MASK;
+        }
+
+        @Override
+        int nextInt() {
+            state = (state * MULTIPLIER + ADDEND) & MASK;
+            return (int) (state >>> 16);
+        }
+
+        @Override
+        void write(ByteBuffer out) {
+            out.putLong(state).putLong(0).putInt(0).put((byte) 0);
+        }
+
+        @Override
+        void read(ByteBuffer in) {
+            state = in.getLong() & MASK;
+            in.getLong();
+            in.getInt();
+            in.get();
+        }
+
+        @Override
+        void fill(int[] buffer) {
+            long s = state;
+            for (int i = 0; i < buffer.length; i++) {
+                s = (s * MULTIPLIER + ADDEND) & MASK;
+                buffer[i] = (int) (s >>> 16);
+            }
+            state = s;
+        }
+    }
+
+    /**
+     * A generator of 64 bits at a time, handed out as the high and then the low half.
+     */
+    private abstract static class Generator64 extends Generator {
+        // The low half of the last output, if it has not been handed out yet.
+        private int low;
+        private boolean haveLow;
+
+        /**
+         * @return The next 64 random bits.
+         */
+        abstract long nextLong();
+
+        /**
+         * Restart the 64-bit state from a seed.
+         */
+        abstract void seed64(long seed);
+
+        /**
+         * @return The first and second word of the 64-bit state; the second may be unused.
+         */
+        abstract long getWord(int word);
+
+        abstract void setWord(int word, long value);
+
+        @Override
+        final void write(ByteBuffer out) {
+            out.putLong(getWord(0)).putLong(getWord(1)).putInt(low).put((byte) (haveLow ? 1 : 0));
+        }
+
+        @Override
+        final void read(ByteBuffer in) {
+            setWord(0, in.getLong());
+            setWord(1, in.getLong());
+            low = in.getInt();
+            haveLow = in.get() != 0;
+        }
+
+        @Override
+        final void seed(long seed) {
+            haveLow = false;
+            seed64(seed);
+        }
+
+        @Override
+        final int nextInt() {
+            if (haveLow) {
+                haveLow = false;
+                return low;
+            }
+            long bits = nextLong();
+            low = (int) bits;
+            haveLow = true;
+            return (int) (bits >>> 32);
+        }
+
+        @Override
+        final void fill(int[] buffer) {
+            int i = 0;
+            if (haveLow && buffer.length > 0) {
+                haveLow = false;
+                buffer[i++] = low;
+            }
+            for (; i + 1 < buffer.length; i += 2) {
+                long bits = nextLong();
+                buffer[i] = (int) (bits >>> 32);
+                buffer[i + 1] = (int) bits;
+            }
+            if (i < buffer.length) {
+                buffer[i] = nextInt();
+            }
+        }
+    }
+
+    private static final class SplitMix64 extends Generator64 {
+        private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+        private long state;
+
+        @Override
+        void seed64(long seed) {
+            state = seed;
+        }
+
+        @Override
+        long getWord(int word) {
+            return word == 0 ? state : 0;
+        }
+
+        @Override
+        void setWord(int word, long value) {
+            if (word == 0) {
+                state = value;
+            }
+        }
+
+        @Override
+        long nextLong() {
+            state += GAMMA;
+            return Randomizer.mix(state);
+        }
+    }
+
+    private static final class Xoroshiro128PlusPlus extends Generator64 {
+        private long s0;
+        private long s1;
+
+        @Override
+        void seed64(long seed) {
+            // Spread the seed over both words, as the authors advise, with SplitMix64.
+            s0 = Randomizer.mix(seed + 0x9E3779B97F4A7C15L);
+            s1 = Randomizer.mix(seed + 2 * 0x9E3779B97F4A7C15L);
+            if ((s0 | s1) == 0) {
+                s1 = 1;
+            }
+        }
+
+        @Override
+        long getWord(int word) {
+            return word == 0 ? s0 : s1;
+        }
+
+        @Override
+        void setWord(int word, long value) {
+            if (word == 0) {
+                s0 = value;
+            } else {
+                s1 = value;
+            }
+        }
+
+        @Override
+        long nextLong() {
+            long a = s0;
+            long b = s1;
+            long result = Long.rotateLeft(a + b, 17) + a;
+            b ^= a;
+            s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+            s1 = Long.rotateLeft(b, 28);
+            return result;
+        }
+    }
+
+    private static final class Pcg32 extends Generator {
+        private static final long MULTIPLIER = 6364136223846793005L;
+        // The stream constant of the reference implementation; it must be odd.
+        private static final long INCREMENT = 1442695040888963407L;
+
+        private long state;
+
+        @Override
+        void seed(long seed) {
+            state = 0;
+            nextInt();
+            state += seed;
+            nextInt();
+        }
+
+        @Override
+        void write(ByteBuffer out) {
+            out.putLong(state).putLong(0).putInt(0).put((byte) 0);
+        }
+
+        @Override
+        void read(ByteBuffer in) {
+            state = in.getLong();
+            in.getLong();
+            in.getInt();
+            in.get();
+        }
+
+        @Override
+        int nextInt() {
+            long old = state;
+            state = old * MULTIPLIER + INCREMENT;
+            int shifted = (int) (((old >>> 18) ^ old) >>> 27);
+            return Integer.rotateRight(shifted, (int) (old >>> 59));
+        }
+    }
+}
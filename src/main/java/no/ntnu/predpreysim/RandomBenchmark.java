@@ -0,0 +1,117 @@
+package no.ntnu.predpreysim;
+
+import java.util.Random;
+
+/**
+ * Compares the random number algorithms: how long a draw takes on its own,
+ * one by one or in batches, and how long a simulation takes with each.
+ * Prints one line per algorithm and way of drawing. The time of a run also
+ * depends on how its populations develop, and those differ from one algorithm
+ * to the next; only batched and single runs of one algorithm are alike.
+ * <p>
+ * Arguments, all optional: the number of draws, the height and width of the
+ * field, and the number of steps.
+ *
+ * @author asty
+ */
+public class RandomBenchmark {
+    // The number of ints a batched stream draws at a time.
+    private static final int BATCH = 256;
+
+    /**
+     * @param args The number of draws, height, width and steps.
+     */
+    public static void main(String[] args) {
+        int draws = args.length > 0 ? Integer.parseInt(args[0]) : 50_000_000;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+        int steps = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+        System.out.printf("%-16s %-8s %12s %12s %12s %10s%n",
+                "Algorithm", "Draws", "nextDouble", "nextInt(8)", "bulk", "run ms");
+        // The first round warms up the compiler and is not shown.
+        for (int round = 0; round < 2; round++) {
+            for (RandomAlgorithm algorithm : RandomAlgorithm.values()) {
+                for (int batch : new int[]{0, BATCH}) {
+                    Randomizer.setAlgorithm(algorithm);
+                    Randomizer.setBatchSize(batch);
+                    String line = String.format("%-16s %-8s %12s %12s %12s %10d",
+                            algorithm, batch == 0 ? "single" : "batched",
+                            nanosPerDraw(draws, true), nanosPerDraw(draws, false),
+                            nanosPerBulkDraw(draws), simulate(height, width, steps));
+                    if (round > 0) {
+                        System.out.println(line);
+                    }
+                }
+            }
+        }
+        Randomizer.setAlgorithm(RandomAlgorithm.LCG);
+        Randomizer.setBatchSize(0);
+    }
+
+    /**
+     * @return The time of a draw through the shared generator, in nanoseconds,
+     * of doubles or of ints below 8.
+     */
+    private static String nanosPerDraw(int draws, boolean doubles) {
+        Random random = Randomizer.getRandom();
+        Randomizer.Stream previous = Randomizer.bind(Randomizer.seeded(1));
+        try {
+            double sum = 0;
+            long start = System.nanoTime();
+            if (doubles) {
+                for (int i = 0; i < draws; i++) {
+                    sum += random.nextDouble();
+                }
+            } else {
+                for (int i = 0; i < draws; i++) {
+                    sum += random.nextInt(8);
+                }
+            }
+            return format(System.nanoTime() - start, draws, sum);
+        } finally {
+            Randomizer.bind(previous);
+        }
+    }
+
+    /**
+     * @return The time of a double drawn into a buffer, in nanoseconds.
+     */
+    private static String nanosPerBulkDraw(int draws) {
+        Randomizer.Stream stream = Randomizer.seeded(1);
+        double[] buffer = new double[4096];
+        double sum = 0;
+        long start = System.nanoTime();
+        for (int drawn = 0; drawn < draws; drawn += buffer.length) {
+            stream.nextDoubles(buffer);
+            sum += buffer[0];
+        }
+        return format(System.nanoTime() - start, draws, sum);
+    }
+
+    /**
+     * @return The time of a headless run, in milliseconds.
+     */
+    private static long simulate(int height, int width, int steps) {
+        Randomizer.Stream previous = Randomizer.bind(Randomizer.seeded(1));
+        try {
+            Simulator simulator = new Simulator(height, width, 3);
+            simulator.setOutputPolicy(OutputPolicy.none());
+            long start = System.nanoTime();
+            for (int step = 0; step < steps; step++) {
+                simulator.simulateOneStep();
+            }
+            return (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            Randomizer.bind(previous);
+        }
+    }
+
+    /**
+     * Format the time per draw. The sum of the draws is folded in so the
+     * draws cannot be optimised away, without changing what is shown.
+     */
+    private static String format(long nanos, int draws, double sum) {
+        return String.format("%.2f ns", (double) nanos / draws + (sum == -1 ? 1 : 0));
+    }
+}
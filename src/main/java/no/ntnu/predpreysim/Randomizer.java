@@ -1,9 +1,34 @@
 package no.ntnu.predpreysim;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provide control over the randomization of the simulation.
+ * <p>
+ * The shared generator can be temporarily replaced, on one thread at a time, by a
+ * stream of its own. Parallel steps bind a stream per tile, so the numbers a tile
+ * draws do not depend on how the threads are scheduled, and an ensemble binds a
+ * seeded stream per run, so that runs on different threads do not share numbers.
+ * <p>
+ * Every stream belongs to a run, named by its seed, and is keyed within the run,
+ * for example by step and tile. A stream split off another one keeps its run, so
+ * the tiles of a parallel step inside an ensemble run draw numbers of their own
+ * run, not of the default one. Streams are only ever used by one thread at a time
+ * and step their state without the compare-and-set of java.util.Random.
+ * <p>
+ * A draw takes no lock and, in the common cases, looks nothing up: while no
+ * thread has a stream bound, every draw goes to the shared sequence, which
+ * belongs to the thread running the default simulation; and the thread that
+ * bound a stream last finds it without going through its thread-local.
+ * Only when several threads have streams bound at once do the others look
+ * theirs up.
+ * <p>
+ * The streams draw with a {@link RandomAlgorithm}, the LCG of java.util.Random
+ * unless another is chosen. A stream can also draw its bits a batch at a time
+ * into a buffer, which saves a call into the generator per draw; it hands out
+ * the same numbers either way.
  *
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
@@ -11,10 +36,22 @@ import java.util.Random;
 public class Randomizer {
     // The default seed for control of randomization.
     private static final int SEED = 1;
-    // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
+    // The stream bound to each thread, if any.
+    private static final ThreadLocal<Stream> bound = new ThreadLocal<>();
+    // The number of threads that have a stream bound.
+    private static final AtomicInteger bindings = new AtomicInteger();
+    // The thread that bound or unbound a stream last, and what it bound.
+    private static volatile Binding last = new Binding(null, null);
     // Determine whether a shared random generator is to be provided.
     private static final boolean useShared = true;
+    // The algorithm new streams draw with.
+    private static volatile RandomAlgorithm algorithm = RandomAlgorithm.LCG;
+    // The number of ints new streams draw at a time, or 0 to draw them one by one.
+    private static volatile int batchSize;
+    // The stream the shared generator draws from when none is bound.
+    private static volatile Stream sharedStream = seeded(SEED);
+    // A shared Random object, if required.
+    private static final Random rand = new SharedRandom(SEED);
 
     /**
      * Constructor for objects of class Randomizer
@@ -43,7 +80,329 @@ public class Randomizer {
      */
     public static void reset() {
         if (useShared) {
-            rand.setSeed(SEED);
+            sharedStream = seeded(SEED);
+        }
+    }
+
+    /**
+     * Choose the algorithm that streams draw with from now on, and reset the
+     * shared generator to draw with it too.
+     *
+     * @param algorithm The algorithm.
+     */
+    public static void setAlgorithm(RandomAlgorithm algorithm) {
+        Randomizer.algorithm = algorithm;
+        reset();
+    }
+
+    /**
+     * @return The algorithm streams draw with.
+     */
+    public static RandomAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Choose how many ints streams created from now on draw at a time. A
+     * larger batch makes each draw cheaper, but a stream that is rekeyed
+     * after a few draws, as for each actor in a buffered step, wastes most of
+     * every batch.
+     *
+     * @param size The number of ints, or 0 to draw them one by one.
+     */
+    public static void setBatchSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative batch size: " + size);
+        }
+        batchSize = size;
+    }
+
+    /**
+     * Create a generator of the default run whose numbers depend only on the
+     * given key. Tables shared by all runs are built from these.
+     *
+     * @param key Which stream.
+     * @return A new generator.
+     */
+    static Stream newStream(long key) {
+        return newStream(SEED, key);
+    }
+
+    /**
+     * Create a generator whose numbers depend only on the run seed and the given key.
+     *
+     * @param seed The seed of the run, see {@link #getSeed()}.
+     * @param key  Which stream, for example a tile number mixed with the step.
+     * @return A new generator.
+     */
+    static Stream newStream(long seed, long key) {
+        Stream stream = new Stream(seed, algorithm, batchSize);
+        stream.rekey(key);
+        return stream;
+    }
+
+    /**
+     * Create a generator that draws the same numbers as the shared one does
+     * after being reset with the given seed, and that starts a run of that seed.
+     *
+     * @param seed The seed.
+     * @return A new generator.
+     */
+    static Stream seeded(long seed) {
+        Stream stream = new Stream(seed, algorithm, batchSize);
+        stream.setSeed(seed);
+        return stream;
+    }
+
+    /**
+     * Return the seed of the run on the current thread: that of the stream bound
+     * to it, or the default seed if none is. Code that hands work to other threads
+     * reads it first, and keys the streams of that work with it.
+     *
+     * @return The seed of the run.
+     */
+    static long getSeed() {
+        Stream stream = bound.get();
+        return stream == null ? SEED : stream.seed;
+    }
+
+    /**
+     * Write the state of the generator the current thread draws from: the
+     * stream bound to it, or the shared one.
+     *
+     * @param out Where to write; it must have room for {@link #getStateSize()} bytes.
+     */
+    static void writeState(ByteBuffer out) {
+        current().write(out);
+    }
+
+    /**
+     * @return The number of bytes writeState writes.
+     */
+    static int getStateSize() {
+        return current().getStateSize();
+    }
+
+    /**
+     * Make the current thread draw on from a state written by writeState: the
+     * stream bound to it is replaced, or the shared one if none is bound.
+     *
+     * @param in Where to read.
+     */
+    static void readState(ByteBuffer in) {
+        Stream stream = Stream.read(in);
+        if (bound.get() == null) {
+            sharedStream = stream;
+        } else {
+            bind(stream);
+        }
+    }
+
+    /**
+     * Make the shared generator draw from the given stream on the current thread.
+     *
+     * @param stream The stream, or null to draw from the shared sequence again.
+     * @return The stream bound before, or null; bind it again to undo this.
+     */
+    static Stream bind(Stream stream) {
+        Stream previous = bound.get();
+        if (stream == null) {
+            bound.remove();
+        } else {
+            bound.set(stream);
+        }
+        if (previous == null && stream != null) {
+            bindings.incrementAndGet();
+        } else if (previous != null && stream == null) {
+            bindings.decrementAndGet();
+        }
+        last = new Binding(Thread.currentThread(), stream);
+        return previous;
+    }
+
+    /**
+     * @return The stream the current thread draws from: the one bound to it,
+     * or the shared one.
+     */
+    private static Stream current() {
+        Stream stream = null;
+        if (bindings.get() != 0) {
+            Binding binding = last;
+            stream = binding.thread == Thread.currentThread() ? binding.stream : bound.get();
+        }
+        return stream == null ? sharedStream : stream;
+    }
+
+    /**
+     * The SplitMix64 finalizer, which spreads every bit of the input over the output.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * A generator that can stand in for the shared one. It turns the bits of
+     * its algorithm into numbers the way java.util.Random does, so with the LCG
+     * it draws the same numbers as java.util.Random from the same seed. It
+     * keeps its state in plain fields, as only one thread uses it at a time.
+     */
+    static class Stream extends Random {
+        // The seed of the run the stream belongs to.
+        private final long seed;
+        // The algorithm that makes the bits.
+        private final RandomAlgorithm algorithm;
+        // The algorithm that makes the bits; null only while Random's constructor runs.
+        private final RandomAlgorithm.Generator generator;
+        // The bits drawn ahead, or null to draw them one by one.
+        private final int[] batch;
+        // The next unused int in the batch; the batch is used up when this reaches its end.
+        private int position;
+
+        Stream(long seed, RandomAlgorithm algorithm, int batchSize) {
+            super(0);
+            this.seed = seed;
+            this.algorithm = algorithm;
+            generator = algorithm.create();
+            batch = batchSize > 0 ? new int[batchSize] : null;
+            position = batchSize;
+        }
+
+        /**
+         * Restart the stream as the one with the given key in its run, as
+         * newStream would create it.
+         */
+        void rekey(long key) {
+            setSeed(mix(seed * 0x9E3779B97F4A7C15L + key));
+        }
+
+        @Override
+        public void setSeed(long seed) {
+            super.setSeed(seed);
+            if (generator != null) {
+                generator.seed(seed);
+                if (batch != null) {
+                    position = batch.length;
+                }
+            }
+        }
+
+        @Override
+        protected int next(int bits) {
+            int random;
+            if (batch == null) {
+                random = generator.nextInt();
+            } else {
+                if (position == batch.length) {
+                    generator.fill(batch);
+                    position = 0;
+                }
+                random = batch[position++];
+            }
+            return random >>> (32 - bits);
+        }
+
+        int bits(int bits) {
+            return next(bits);
+        }
+
+        /**
+         * Fill a buffer with the doubles nextDouble would return next.
+         *
+         * @param buffer The buffer.
+         */
+        void nextDoubles(double[] buffer) {
+            for (int i = 0; i < buffer.length; i++) {
+                buffer[i] = nextDouble();
+            }
+        }
+
+        /**
+         * @return The number of bytes write writes.
+         */
+        int getStateSize() {
+            int batched = batch == null ? 0 : batch.length - position;
+            return 4 + 8 + 4 + 4 + RandomAlgorithm.Generator.STATE_SIZE + 4 * batched;
+        }
+
+        /**
+         * Write everything needed to draw on from here: the algorithm, the run,
+         * the state of the generator and the ints drawn ahead.
+         */
+        void write(ByteBuffer out) {
+            out.putInt(algorithm.ordinal());
+            out.putLong(seed);
+            out.putInt(batch == null ? 0 : batch.length);
+            out.putInt(position);
+            generator.write(out);
+            if (batch != null) {
+                for (int i = position; i < batch.length; i++) {
+                    out.putInt(batch[i]);
+                }
+            }
+        }
+
+        /**
+         * Create a stream that draws on from a state written by write.
+         */
+        static Stream read(ByteBuffer in) {
+            RandomAlgorithm[] algorithms = RandomAlgorithm.values();
+            int ordinal = in.getInt();
+            if (ordinal < 0 || ordinal >= algorithms.length) {
+                throw new IllegalArgumentException("Unknown random algorithm " + ordinal);
+            }
+            long seed = in.getLong();
+            int batchSize = in.getInt();
+            int position = in.getInt();
+            if (batchSize < 0 || position < 0 || position > batchSize) {
+                throw new IllegalArgumentException("Bad random batch " + position + " of " + batchSize);
+            }
+            Stream stream = new Stream(seed, algorithms[ordinal], batchSize);
+            stream.generator.read(in);
+            stream.position = position;
+            for (int i = position; i < batchSize; i++) {
+                stream.batch[i] = in.getInt();
+            }
+            return stream;
+        }
+    }
+
+    /**
+     * A thread and the stream it bound, or null if it unbound its stream.
+     */
+    private static final class Binding {
+        private final Thread thread;
+        private final Stream stream;
+
+        Binding(Thread thread, Stream stream) {
+            this.thread = thread;
+            this.stream = stream;
+        }
+    }
+
+    /**
+     * The shared generator, which hands its work to the stream bound to the
+     * calling thread, if there is one.
+     */
+    private static class SharedRandom extends Random {
+        SharedRandom(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public void setSeed(long seed) {
+            super.setSeed(seed);
+            // Random calls this on construction, before the shared stream may exist.
+            Stream shared = sharedStream;
+            if (shared != null) {
+                shared.setSeed(seed);
+            }
+        }
+
+        @Override
+        protected int next(int bits) {
+            return current().bits(bits);
         }
     }
 }
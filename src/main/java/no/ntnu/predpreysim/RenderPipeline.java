@@ -0,0 +1,161 @@
+package no.ntnu.predpreysim;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Draws the simulation on a thread of its own, so that the simulation runs at
+ * its own speed whatever the frame rate. Attached to a simulator as a view, it
+ * takes a snapshot of the field after each step and puts it in a small queue;
+ * a render thread takes the snapshots out and shows them to its views. When
+ * the renderer falls behind and the queue is full, the oldest snapshot is
+ * dropped, so the views always catch up with the latest step.
+ * <p>
+ * Every reset starts a new generation of snapshots. The views are reset before
+ * the first snapshot of a generation is drawn, and a snapshot of an earlier
+ * generation that the render thread still holds is dropped, so no frame of an
+ * old run is drawn after the views were reset.
+ *
+ * @author asty
+ */
+public class RenderPipeline implements SimulatorView, AutoCloseable {
+    // The number of snapshots waiting to be drawn, by default.
+    public static final int DEFAULT_CAPACITY = 2;
+
+    // The snapshots waiting to be drawn.
+    private final BlockingQueue<Frame> queue;
+    // The views the snapshots are shown to.
+    private final List<SnapshotView> views = new CopyOnWriteArrayList<>();
+    // The number of resets so far; snapshots taken before the last one are not drawn.
+    private final AtomicInteger generation = new AtomicInteger();
+    // How many snapshots were taken, dropped and drawn.
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rendered = new AtomicLong();
+    // The thread the views are drawn on.
+    private final Thread renderer;
+
+    /**
+     * Start a pipeline with the default queue.
+     */
+    public RenderPipeline() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Start a pipeline.
+     *
+     * @param capacity The number of snapshots that can wait to be drawn.
+     */
+    public RenderPipeline(int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+        renderer = new Thread(this::render, "Renderer");
+        renderer.setDaemon(true);
+        renderer.start();
+    }
+
+    /**
+     * Add a view to show the snapshots to.
+     *
+     * @param view The view.
+     */
+    public void addView(SnapshotView view) {
+        views.add(view);
+    }
+
+    @Override
+    public void showStatus(int step, Field field) {
+        if (views.isEmpty()) {
+            return;
+        }
+        Frame frame = new Frame(generation.get(), Snapshot.of(step, field));
+        published.incrementAndGet();
+        while (!queue.offer(frame)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        generation.incrementAndGet();
+        queue.clear();
+    }
+
+    /**
+     * Stop the render thread. Snapshots still waiting are not drawn.
+     */
+    @Override
+    public void close() {
+        renderer.interrupt();
+    }
+
+    /**
+     * @return The number of snapshots taken.
+     */
+    public long getPublished() {
+        return published.get();
+    }
+
+    /**
+     * @return The number of snapshots dropped because the renderer was behind.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The number of snapshots drawn.
+     */
+    public long getRendered() {
+        return rendered.get();
+    }
+
+    /**
+     * Show the snapshots as they come, until the pipeline is closed.
+     */
+    private void render() {
+        // The generation the views show.
+        int shown = 0;
+        try {
+            while (true) {
+                Frame frame = queue.take();
+                if (frame.generation != generation.get()) {
+                    dropped.incrementAndGet();
+                    continue;
+                }
+                if (frame.generation != shown) {
+                    shown = frame.generation;
+                    // Resetting a view redraws it, which Swing only allows on its own thread.
+                    for (SnapshotView view : views) {
+                        SimulatorWindows.onEventThread(view::reset);
+                    }
+                }
+                for (SnapshotView view : views) {
+                    view.show(frame.snapshot);
+                }
+                rendered.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            // Closed.
+        }
+    }
+
+    /**
+     * A snapshot and the generation it belongs to.
+     */
+    private static final class Frame {
+        final int generation;
+        final Snapshot snapshot;
+
+        Frame(int generation, Snapshot snapshot) {
+            this.generation = generation;
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Actor;
+
+import java.util.List;
+
+/**
+ * Lets the actors act one after the other, in list order, on the calling thread.
+ * <p>
+ * An actor that is no longer active after it has acted is dropped, but the
+ * list is only compacted once, at the end of the step: the survivors are
+ * moved down over the dead as the step goes, and the tail is cut off. The
+ * dead go back to their pools for newborns to reuse.
+ *
+ * @author asty
+ */
+public class SequentialStepEngine implements StepEngine {
+    @Override
+    public void step(int step, Field field, List<Actor> actors, List<Actor> newActors) {
+        int count = actors.size();
+        int live = 0;
+        for (int i = 0; i < count; i++) {
+            Actor actor = actors.get(i);
+            actor.act(newActors);
+            if (actor.isActive()) {
+                if (live != i) {
+                    actors.set(live, actor);
+                }
+                live++;
+            } else {
+                field.getOrganismPool().release(actor);
+            }
+        }
+        actors.subList(live, count).clear();
+        actors.addAll(newActors);
+    }
+}
@@ -0,0 +1,109 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Flower;
+import no.ntnu.predpreysim.actor.Fox;
+import no.ntnu.predpreysim.actor.Grass;
+import no.ntnu.predpreysim.actor.Human;
+import no.ntnu.predpreysim.actor.Hunter;
+import no.ntnu.predpreysim.actor.Rabbit;
+import no.ntnu.predpreysim.actor.SpeciesParameters;
+
+/**
+ * The parameters of one simulation: the characteristics of every species, and
+ * the probability that the population generator creates one of them in a
+ * grid position. A field carries the parameters its organisms live by, so
+ * simulations with different parameters can run side by side.
+ * <p>
+ * The parameters are read when organisms are created; change them before the
+ * simulation starts.
+ *
+ * @author asty
+ */
+public class SimulationParameters {
+    // The characteristics of each species, by species id.
+    private final SpeciesParameters[] species = new SpeciesParameters[Species.MAX_SPECIES];
+    // The probability that a species is created in any given grid position, by species id.
+    private final double[] creationProbabilities = new double[Species.MAX_SPECIES];
+
+    /**
+     * Create parameters without any species.
+     */
+    public SimulationParameters() {
+    }
+
+    /**
+     * @return The parameters every species class is written with.
+     */
+    public static SimulationParameters defaults() {
+        SimulationParameters parameters = new SimulationParameters();
+        parameters.set(Fox.class, Fox.defaultParameters());
+        parameters.set(Rabbit.class, Rabbit.defaultParameters());
+        parameters.set(Grass.class, Grass.defaultParameters());
+        parameters.set(Flower.class, Flower.defaultParameters());
+        parameters.set(Human.class, Human.defaultParameters());
+        parameters.set(Hunter.class, Human.defaultParameters());
+        parameters.setCreationProbability(Fox.class, 0.01);
+        parameters.setCreationProbability(Rabbit.class, 0.05);
+        parameters.setCreationProbability(Grass.class, 0.25);
+        parameters.setCreationProbability(Flower.class, 0.15);
+        parameters.setCreationProbability(Human.class, 0.0);
+        parameters.setCreationProbability(Hunter.class, 0.0);
+        return parameters;
+    }
+
+    /**
+     * Return the characteristics of a species. They can be changed in place.
+     *
+     * @param type The class of organism.
+     * @return Its characteristics.
+     */
+    public SpeciesParameters of(Class<?> type) {
+        SpeciesParameters parameters = species[Species.idOf(type)];
+        if (parameters == null) {
+            throw new IllegalArgumentException("No parameters for " + type.getSimpleName());
+        }
+        return parameters;
+    }
+
+    /**
+     * @return The characteristics of a species, or null if it has none.
+     */
+    SpeciesParameters find(Class<?> type) {
+        return species[Species.idOf(type)];
+    }
+
+    /**
+     * Set the characteristics of a species.
+     *
+     * @param type       The class of organism.
+     * @param parameters Its characteristics.
+     */
+    public void set(Class<?> type, SpeciesParameters parameters) {
+        species[Species.idOf(type)] = parameters;
+    }
+
+    /**
+     * @return The probability that the species is created in any given grid position.
+     */
+    public double getCreationProbability(Class<?> type) {
+        return creationProbabilities[Species.idOf(type)];
+    }
+
+    public void setCreationProbability(Class<?> type, double probability) {
+        creationProbabilities[Species.idOf(type)] = probability;
+    }
+
+    /**
+     * @return A deep copy that can be changed without changing these parameters.
+     */
+    public SimulationParameters copy() {
+        SimulationParameters copy = new SimulationParameters();
+        for (int id = 0; id < species.length; id++) {
+            if (species[id] != null) {
+                copy.species[id] = species[id].copy();
+            }
+        }
+        System.arraycopy(creationProbabilities, 0, copy.creationProbabilities, 0, creationProbabilities.length);
+        return copy;
+    }
+}
@@ -2,15 +2,23 @@ package no.ntnu.predpreysim;
 
 import no.ntnu.predpreysim.actor.*;
 
-import javax.swing.*;
-import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
  * A simple predator-prey simulator, based on a rectangular field
  * containing rabbits and foxes.
+ * <p>
+ * The simulator runs headless: it has no views of its own and needs no
+ * display. Views can be attached to it with {@link #addView}, as the
+ * {@link SimulatorWindows} do on a desktop.
  *
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
@@ -26,16 +34,30 @@ public class Simulator {
 
     // List of actors in the field.
     private List<Actor> actors;
+    // The actors born during a step, reused from step to step.
+    private final List<Actor> newActors = new ActorList();
     // The current state of the field.
     private Field field;
     // The current step of the simulation.
     private int step;
-    // A graphical view of the simulation.
+    // The views attached to the simulation, if any.
     private List<SimulatorView> views;
+    // Counts the species, to tell whether the simulation is still viable.
+    private final FieldStats stats = new FieldStats();
 
     private Logger logger;
 
     private IndividualLogger individualLogger;
+    // Lets the actors act, one step at a time.
+    private StepEngine engine = new SequentialStepEngine();
+    // Decides after which steps the views are updated and the loggers record.
+    private OutputPolicy output = OutputPolicy.everyStep();
+    // The last step the views were shown.
+    private int shownStep;
+    // The world image the simulation starts from, or null to populate the field at random.
+    private Path image;
+    // The checkpoint chain appended to, or null before the first append.
+    private CheckpointChain chain;
 
     /**
      * Construct a simulation field with default size.
@@ -51,6 +73,59 @@ public class Simulator {
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int height, int width, int depth) {
+        this(height, width, depth, Field.DEFAULT_LAYOUT);
+    }
+
+    /**
+     * Create a simulation field with the given size and storage layout.
+     *
+     * @param height Height of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param layout How the field lays out its cells in memory.
+     */
+    public Simulator(int height, int width, int depth, FieldLayout layout) {
+        this(height, width, depth, layout, SimulationParameters.defaults());
+    }
+
+    /**
+     * Create a simulation field with the given size and storage layout, whose
+     * species live by the given parameters.
+     *
+     * @param height Height of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param layout How the field lays out its cells in memory.
+     * @param parameters The characteristics and creation probabilities of the species.
+     */
+    public Simulator(int height, int width, int depth, FieldLayout layout, SimulationParameters parameters) {
+        this(height, width, depth, layout, FieldStorage.HEAP, parameters);
+    }
+
+    /**
+     * Create a simulation field with the given size, storage layout and kind of
+     * storage.
+     *
+     * @param height Height of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param layout How the field lays out its cells in memory.
+     * @param storage Where the field keeps its cells; OFF_HEAP needs a dense layout.
+     */
+    public Simulator(int height, int width, int depth, FieldLayout layout, FieldStorage storage) {
+        this(height, width, depth, layout, storage, SimulationParameters.defaults());
+    }
+
+    /**
+     * Create a simulation field with the given size, storage layout and kind of
+     * storage, whose species live by the given parameters.
+     *
+     * @param height Height of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param layout How the field lays out its cells in memory.
+     * @param storage Where the field keeps its cells; OFF_HEAP needs a dense layout.
+     * @param parameters The characteristics and creation probabilities of the species.
+     * @throws IllegalArgumentException If the layout cannot be kept in the storage.
+     */
+    public Simulator(int height, int width, int depth, FieldLayout layout, FieldStorage storage,
+                     SimulationParameters parameters) {
         if (height <= 0 || width <= 0|| depth <= 0) {
             System.out.println("The dimensions must be greater than zero.");
             System.out.println("Using default values.");
@@ -59,33 +134,29 @@ public class Simulator {
             depth = DEFAULT_DEPTH;
         }
 
-        actors = new ArrayList<>();
-        field = new Field(height, width, depth);
+        actors = new ActorList();
+        field = new Field(height, width, depth, layout, storage);
+        field.setParameters(parameters);
 
         views = new ArrayList<>();
 
-        //TODO Add to java fx
-
-        // The grid view.
-        SimulatorView view = new GridView(height, width);
-        views.add(view);
-
-        //The graph view.
-
-        view = new GraphView(500, 150, 500);
-        view.setColor(Rabbit.class, Color.BLACK);
-        view.setColor(Fox.class, Color.RED);
-        views.add(view);
-
-        // The text view.
-//        views.add(new TextView());
-
         // Setup a valid starting point.
         reset();
+    }
 
-        //Create a logger
-        logger = new Logger();
-        individualLogger = new IndividualLogger();
+    /**
+     * Create a simulation that starts from a world image written by
+     * saveWorldImage. The field is mapped from the image rather than populated,
+     * and its actors are made as they are first needed, so even a large world
+     * is ready at once. Resetting the simulation goes back to the image.
+     *
+     * @param image The world image.
+     * @throws IOException If reading fails or the file holds no world image.
+     */
+    public Simulator(Path image) throws IOException {
+        this.image = image;
+        views = new ArrayList<>();
+        loadImage();
     }
 
     /**
@@ -103,11 +174,15 @@ public class Simulator {
      * @param numSteps The number of steps to run for.
      */
     public void simulate(int numSteps) {
-        for (int step = 1; step <= numSteps && views.get(0).isViable(field); step++) {
+        for (int step = 1; step <= numSteps && isViable(); step++) {
             simulateOneStep();
             // Uncomment to run slow simulation.
             //wait(100);
         }
+        // Let the views end on the last step, even if the policy skipped it.
+        if (shownStep != step) {
+            updateViews();
+        }
     }
 
     /**
@@ -119,36 +194,225 @@ public class Simulator {
         step++;
 
         // Provide space for newborn actors.
-        List<Actor> newActor = new ArrayList<>();
-        // Let all actors act.
-        for (Iterator<Actor> it = actors.iterator(); it.hasNext(); ) {
-            Actor actor = it.next();
-            actor.act(newActor);
-            if (!actor.isActive()) {
-                it.remove();
-              // individualLogger.setDead(actor, step);
+        newActors.clear();
+        // Let all actors act; the newly born are added to the main list.
+        engine.step(step, field, actors, newActors);
+
+        if (output.shouldLog(step)) {
+            if (logger == null) {
+                // Create the loggers, and their files, when first needed.
+                logger = new Logger();
+                individualLogger = new IndividualLogger();
             }
+            individualLogger.addNewActors(newActors, step);
+            logger.log(step, field);
+        }
+        if (output.shouldRender(step)) {
+            updateViews();
+        }
+    }
+
+    /**
+     * Choose how the actors are stepped, for example in parallel.
+     *
+     * @param engine The engine to use from the next step on.
+     */
+    public void setStepEngine(StepEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Choose after which steps the views are updated and the loggers record.
+     * The loggers then only see the steps they record, so the individual
+     * logger follows the actors born on those steps only.
+     *
+     * @param output The policy to use from the next step on.
+     */
+    public void setOutputPolicy(OutputPolicy output) {
+        this.output = output;
+    }
+
+    /**
+     * Save the state of the simulation, including the state of the random
+     * generator it draws from, so that it can be resumed later. The file is
+     * written next to its final place and moved there once complete, so an
+     * earlier checkpoint survives a failed write.
+     *
+     * @param file The file to save to.
+     * @throws IOException If writing fails.
+     */
+    public void saveCheckpoint(Path file) throws IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Checkpoint.write(step, field, actors, channel);
+            channel.force(true);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Resume a simulation saved by saveCheckpoint. The field, actors, step and
+     * random generator are replaced by the saved ones, and the views are reset
+     * and shown the saved status. The next appendCheckpoint starts a new chain.
+     *
+     * @param file The file to resume from.
+     * @throws IOException If reading fails or the file holds no checkpoint.
+     */
+    public void restoreCheckpoint(Path file) throws IOException {
+        Checkpoint checkpoint;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            checkpoint = Checkpoint.read(channel);
+        }
+        step = checkpoint.step;
+        field = checkpoint.field;
+        actors.clear();
+        actors.addAll(checkpoint.actors);
+        // The chain holds another history; the next append starts a new one.
+        chain = null;
+        engine.reset();
+        for (SimulatorView view : views) {
+            view.reset();
         }
+        updateViews();
+    }
 
-        // Add the newly born foxes and rabbits to the main lists.
-        actors.addAll(newActor);
-        individualLogger.addNewActors(newActor, step);
-        logger.log(step, field);
+    /**
+     * Append a checkpoint to a chain of checkpoints, including the state of the
+     * random generator the simulation draws from. The first checkpoint of a
+     * chain holds the whole state and replaces whatever the file holds; later
+     * ones only the parts of the field that changed. Each is on disk before
+     * this returns, and a checkpoint cut short by a crash is dropped on restore.
+     *
+     * @param file The file of the chain.
+     * @throws IOException If writing fails.
+     */
+    public void appendCheckpoint(Path file) throws IOException {
+        if (chain == null || !chain.isIn(file)) {
+            chain = new CheckpointChain(file);
+        }
+        chain.append(step, field, actors);
+    }
 
+    /**
+     * Resume a simulation from the last checkpoint of a chain written by
+     * appendCheckpoint. The field, actors, step and random generator are
+     * replaced by the saved ones, the views are reset and shown the saved
+     * status, and later checkpoints are appended to the chain.
+     *
+     * @param file The file of the chain.
+     * @throws IOException If reading fails or the file holds no checkpoint chain.
+     */
+    public void restoreCheckpointChain(Path file) throws IOException {
+        chain = CheckpointChain.open(file);
+        step = chain.getStep();
+        field = chain.getField();
+        actors.clear();
+        actors.addAll(chain.takeActors());
+        engine.reset();
+        for (SimulatorView view : views) {
+            view.reset();
+        }
         updateViews();
     }
 
     /**
-     * Reset the simulation to a starting position.
+     * Fold a chain of checkpoints into a single checkpoint, so that it takes
+     * less space and restores faster. The chain is written next to the file
+     * and moved over it once complete.
+     *
+     * @param file The file of the chain.
+     * @throws IOException If reading or writing fails, or the file holds no checkpoint chain.
+     */
+    public static void compactCheckpointChain(Path file) throws IOException {
+        CheckpointChain.compact(file);
+    }
+
+    /**
+     * Save the field and actors as a world image, which a simulation can later
+     * be started from with {@link #Simulator(Path)}. The step and the state of
+     * the random generator are not saved. The file is written next to its final
+     * place and moved there once complete.
+     *
+     * @param file The file to save to.
+     * @throws IOException If writing fails.
+     */
+    public void saveWorldImage(Path file) throws IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            WorldImage.write(field, actors, channel);
+            channel.force(true);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Attach a view. It is shown the current status at once, and after every step.
+     *
+     * @param view The view.
+     */
+    public void addView(SimulatorView view) {
+        views.add(view);
+        view.showStatus(step, field);
+    }
+
+    /**
+     * Detach a view.
+     *
+     * @param view The view.
+     */
+    public void removeView(SimulatorView view) {
+        views.remove(view);
+    }
+
+    /**
+     * Determine whether the simulation should continue to run.
+     *
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable() {
+        stats.reset();
+        return stats.isViable(field);
+    }
+
+    /**
+     * @return The field of the simulation.
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return The number of steps taken since the last reset.
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Reset the simulation to a starting position. The next appendCheckpoint
+     * starts a new chain.
      */
     public void reset() {
         step = 0;
-        actors.clear();
+        chain = null;
+        engine.reset();
         for (SimulatorView view : views) {
             view.reset();
         }
 
-        populate();
+        if (image == null) {
+            actors.clear();
+            field.clear();
+            populate();
+        } else {
+            try {
+                loadImage();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         updateViews();
     }
 
@@ -156,6 +420,7 @@ public class Simulator {
      * Update all existing views.
      */
     private void updateViews() {
+        shownStep = step;
         for (SimulatorView view : views) {
             view.showStatus(step, field);
 
@@ -166,12 +431,19 @@ public class Simulator {
      * Randomly populate the field with foxes and rabbits.
      */
     private void populate() {
-        PopulationGenerator populationGenerator = new PopulationGenerator(views.get(0));
+        PopulationGenerator populationGenerator = new PopulationGenerator();
         populationGenerator.populate(field, actors);
     }
 
-    public JComponent getSwingViews() {
-        return views.get(0).getJComponentView();
+    /**
+     * Take the field and actors from the world image.
+     */
+    private void loadImage() throws IOException {
+        try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+            WorldImage world = WorldImage.load(channel);
+            field = world.getField();
+            actors = world.getActors();
+        }
     }
 
     /**
@@ -1,30 +1,14 @@
 package no.ntnu.predpreysim;
 
-import javax.swing.*;
-import java.awt.Color;
-
 /**
- * A graphical view of the simulation grid. This interface defines all possible different
- * views.
+ * A view of the simulation. Views are optional observers: a simulator runs
+ * without any, and shows its status to those that are attached to it.
  * 
  * @author Michael Kölling and David J. Barnes
  * @version 2016.02.29
  */
 public interface SimulatorView
 {
-    /**
-     * Define a color to be used for a given class of animal.
-     * @param animalClass The animal's Class object.
-     * @param color The color to be used for the given class.
-     */
-    void setColor(Class animalClass, Color color);
-
-    /**
-     * Determine whether the simulation should continue to run.
-     * @return true If there is more than one species alive.
-     */
-    boolean isViable(Field field);
-
     /**
      * Show the current status of the field.
      * @param step Which iteration step it is.
@@ -32,10 +16,8 @@ public interface SimulatorView
      */
     void showStatus(int step, Field field);
 
-    JComponent getJComponentView();
-
     /**
      * Prepare for a new run.
      */
     void reset();
-}
\ No newline at end of file
+}
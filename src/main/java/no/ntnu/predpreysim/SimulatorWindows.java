@@ -0,0 +1,94 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Flower;
+import no.ntnu.predpreysim.actor.Fox;
+import no.ntnu.predpreysim.actor.Grass;
+import no.ntnu.predpreysim.actor.Human;
+import no.ntnu.predpreysim.actor.Hunter;
+import no.ntnu.predpreysim.actor.Rabbit;
+
+import javax.swing.*;
+import java.awt.Color;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * The windows of a simulation on a desktop: the grid of the field and the
+ * population graph. They attach to a simulator as views, so a simulator that
+ * is run without them never loads Swing.
+ * <p>
+ * The windows are drawn through a {@link RenderPipeline}: the simulation only
+ * takes a snapshot after each step, and the windows are drawn from it on the
+ * event dispatch thread, skipping steps when drawing cannot keep up.
+ *
+ * @author asty
+ */
+public class SimulatorWindows {
+    // The view of the field.
+    private final GridView grid;
+    // The graph of the populations.
+    private final GraphView graph;
+    // Hands the snapshots of the simulation to the windows.
+    private final RenderPipeline pipeline;
+
+    /**
+     * Open the windows and attach them to a simulator.
+     *
+     * @param simulator The simulator to show.
+     */
+    public SimulatorWindows(Simulator simulator) {
+        Field field = simulator.getField();
+
+        // The grid view, with a colour for each species.
+        grid = new GridView(field.getHeight(), field.getWidth());
+        grid.setColor(Rabbit.class, Color.ORANGE);
+        grid.setColor(Fox.class, Color.BLUE);
+        grid.setColor(Human.class, Color.BLACK);
+        grid.setColor(Hunter.class, Color.RED);
+        grid.setColor(Grass.class, Color.GREEN);
+        grid.setColor(Flower.class, Color.YELLOW);
+
+        // The graph view, which plots two species.
+        graph = new GraphView(500, 150, 500);
+        graph.setColor(Rabbit.class, Color.BLACK);
+        graph.setColor(Fox.class, Color.RED);
+
+        pipeline = new RenderPipeline();
+        pipeline.addView(grid);
+        pipeline.addView(graph);
+        simulator.addView(pipeline);
+    }
+
+    /**
+     * @return The pipeline the windows are drawn through.
+     */
+    public RenderPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * @return The component the field is drawn in.
+     */
+    public JComponent getSwingViews() {
+        return grid.getJComponentView();
+    }
+
+    /**
+     * Run a piece of drawing on the event dispatch thread and wait for it, so
+     * that a render thread does not get ahead of what is on the screen.
+     *
+     * @param drawing The drawing to do.
+     */
+    static void onEventThread(Runnable drawing) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            drawing.run();
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(drawing);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Drawing failed", e.getCause());
+        }
+    }
+}
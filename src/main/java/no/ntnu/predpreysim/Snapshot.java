@@ -0,0 +1,128 @@
+package no.ntnu.predpreysim;
+
+/**
+ * A compact copy of the state of the field after a step: the species in each
+ * cell and the number of actors of each species. It holds no actors, so it can
+ * be handed to another thread and drawn while the simulation goes on.
+ *
+ * @author asty
+ */
+public final class Snapshot {
+    // The step the snapshot was taken after.
+    private final int step;
+    // The size of the field.
+    private final int height;
+    private final int width;
+    private final int depth;
+    // One more than the species id in each cell, or 0 for an empty cell, by row, column and layer.
+    private final byte[] cells;
+    // The number of actors of each species, by species id.
+    private final int[] counts;
+
+    private Snapshot(int step, int height, int width, int depth, byte[] cells, int[] counts) {
+        this.step = step;
+        this.height = height;
+        this.width = width;
+        this.depth = depth;
+        this.cells = cells;
+        this.counts = counts;
+    }
+
+    /**
+     * Take a snapshot of a field.
+     *
+     * @param step  The step just taken.
+     * @param field The field.
+     * @return The snapshot.
+     * @throws IllegalArgumentException If the field has too many cells for one array.
+     */
+    public static Snapshot of(int step, Field field) {
+        int height = field.getHeight();
+        int width = field.getWidth();
+        int depth = field.getDepth();
+        long size = (long) height * width * depth;
+        // Some virtual machines refuse arrays quite this close to the int limit.
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A field of " + size + " cells is too large to snapshot");
+        }
+        byte[] cells = new byte[(int) size];
+        field.fillSpecies(cells);
+        int[] counts = new int[Species.count()];
+        for (int species = 0; species < counts.length; species++) {
+            counts[species] = field.getCount(species);
+        }
+        return new Snapshot(step, height, width, depth, cells, counts);
+    }
+
+    /**
+     * @return The step the snapshot was taken after.
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * @return The height of the field.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The width of the field.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The depth of the field.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Return the species in a cell.
+     *
+     * @param row    The row.
+     * @param col    The column.
+     * @param zindex The layer.
+     * @return The species id, or -1 if the cell was empty.
+     */
+    public int getSpecies(int row, int col, int zindex) {
+        return cells[(row * width + col) * depth + zindex] - 1;
+    }
+
+    /**
+     * @return The number of actors of a species.
+     */
+    public int getCount(int species) {
+        return species < counts.length ? counts[species] : 0;
+    }
+
+    /**
+     * @return The number of actors of a class.
+     */
+    public int getCount(Class<?> type) {
+        return getCount(Species.idOf(type));
+    }
+
+    /**
+     * Get details of what was in the field.
+     *
+     * @return A string describing what was in the field.
+     */
+    public String getPopulationDetails() {
+        StringBuilder buffer = new StringBuilder();
+        for (int species = 0; species < counts.length; species++) {
+            if (counts[species] > 0) {
+                buffer.append(Species.classOf(species).getName());
+                buffer.append(": ");
+                buffer.append(counts[species]);
+                buffer.append(' ');
+            }
+        }
+        return buffer.toString();
+    }
+}
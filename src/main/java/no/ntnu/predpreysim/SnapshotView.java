@@ -0,0 +1,21 @@
+package no.ntnu.predpreysim;
+
+/**
+ * A view that draws the snapshots of a simulation, on whatever thread they are
+ * handed to it on.
+ *
+ * @author asty
+ */
+public interface SnapshotView {
+    /**
+     * Show a snapshot of the field.
+     *
+     * @param snapshot The snapshot.
+     */
+    void show(Snapshot snapshot);
+
+    /**
+     * Prepare for a new run.
+     */
+    void reset();
+}
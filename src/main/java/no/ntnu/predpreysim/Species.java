@@ -0,0 +1,81 @@
+package no.ntnu.predpreysim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Give every class of actor a small number, its species id, so that per-species data
+ * can be kept in arrays and sets of species in a single long.
+ * Ids are handed out in the order the classes are first seen and never change
+ * while the program runs. A species is an exact class: subclasses get ids of their own.
+ *
+ * @author asty
+ */
+public final class Species {
+    // The largest number of species, so that a set of them fits in a long.
+    public static final int MAX_SPECIES = 64;
+
+    // The classes that have an id, in id order.
+    private static final List<Class<?>> classes = new ArrayList<>();
+    // The id of each class, computed on first use.
+    private static final ClassValue<Integer> ids = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            synchronized (classes) {
+                if (classes.size() == MAX_SPECIES) {
+                    throw new IllegalStateException("Too many species, cannot add " + type.getName());
+                }
+                classes.add(type);
+                return classes.size() - 1;
+            }
+        }
+    };
+
+    private Species() {
+    }
+
+    /**
+     * Return the species id of a class, giving it one if it has none yet.
+     *
+     * @param type The class of actor.
+     * @return Its species id.
+     */
+    public static int idOf(Class<?> type) {
+        return ids.get(type);
+    }
+
+    /**
+     * Return the class with the given species id.
+     *
+     * @param id A species id.
+     * @return The class that has it.
+     */
+    public static Class<?> classOf(int id) {
+        synchronized (classes) {
+            return classes.get(id);
+        }
+    }
+
+    /**
+     * @return The number of species ids handed out so far.
+     */
+    public static int count() {
+        synchronized (classes) {
+            return classes.size();
+        }
+    }
+
+    /**
+     * Return the set of the given species, as a long with the bit of each species id set.
+     *
+     * @param types The classes in the set.
+     * @return The set of species.
+     */
+    public static long setOf(Class<?>... types) {
+        long set = 0;
+        for (Class<?> type : types) {
+            set |= 1L << idOf(type);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,30 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Actor;
+
+import java.util.List;
+
+/**
+ * Runs one step of the simulation: lets every actor act once.
+ *
+ * @author asty
+ */
+public interface StepEngine {
+    /**
+     * Let every actor act once. Inactive actors are removed from the list and the
+     * newborn are added to it.
+     *
+     * @param step      The number of the step.
+     * @param field     The field the actors live in.
+     * @param actors    The actors; updated for the next step.
+     * @param newActors Receives the actors born during the step.
+     */
+    void step(int step, Field field, List<Actor> actors, List<Actor> newActors);
+
+    /**
+     * Forget whatever the engine keeps from one step to the next, as when the
+     * simulation is reset.
+     */
+    default void reset() {
+    }
+}
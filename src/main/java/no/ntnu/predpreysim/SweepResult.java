@@ -0,0 +1,193 @@
+package no.ntnu.predpreysim;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The summary of every run of a parameter sweep, one row per point of the
+ * design: the values of the factors, the step at which a species first died
+ * out, and the mean population and oscillation period of each species.
+ * Runs record into rows of their own, so they can do so from several threads.
+ *
+ * @author asty
+ */
+public class SweepResult {
+    // The names of the factors.
+    private final String[] factors;
+    // The species whose populations are summarised.
+    private final Class<?>[] species;
+    // The value of every factor, by point.
+    private final double[][] design;
+    // The first step at which a species had died out, or -1, by point.
+    private final int[] extinctionSteps;
+    // The mean populations, by point and species.
+    private final double[][] means;
+    // The oscillation periods, by point and species.
+    private final int[][] periods;
+
+    /**
+     * @param factors The names of the factors.
+     * @param species The species whose populations are summarised.
+     * @param design  The value of every factor, by point.
+     */
+    SweepResult(String[] factors, Class<?>[] species, double[][] design) {
+        this.factors = factors;
+        this.species = species;
+        this.design = design;
+        this.extinctionSteps = new int[design.length];
+        this.means = new double[design.length][species.length];
+        this.periods = new int[design.length][species.length];
+    }
+
+    /**
+     * Summarise the run of a point from its populations after every step.
+     *
+     * @param point  The point.
+     * @param series The populations, by species and step; step 0 is the start.
+     */
+    void record(int point, int[][] series) {
+        int extinction = -1;
+        for (int s = 0; s < species.length; s++) {
+            int[] counts = series[s];
+            long sum = 0;
+            for (int step = 0; step < counts.length; step++) {
+                sum += counts[step];
+                if (counts[step] == 0 && (extinction < 0 || step < extinction)) {
+                    extinction = step;
+                }
+            }
+            means[point][s] = (double) sum / counts.length;
+            periods[point][s] = oscillationPeriod(counts);
+        }
+        extinctionSteps[point] = extinction;
+    }
+
+    /**
+     * Estimate the period of a population that rises and falls, from its
+     * autocorrelation: the autocorrelation first drops below zero half a period
+     * on, and peaks again after a whole one.
+     *
+     * @param counts The population after every step.
+     * @return The period in steps, or 0 if the population does not oscillate.
+     */
+    static int oscillationPeriod(int[] counts) {
+        int n = counts.length;
+        double mean = 0;
+        for (int count : counts) {
+            mean += count;
+        }
+        mean /= n;
+        double variance = 0;
+        for (int count : counts) {
+            variance += (count - mean) * (count - mean);
+        }
+        if (variance == 0) {
+            return 0;
+        }
+        boolean crossed = false;
+        double previous = 1;
+        int best = 0;
+        double bestCorrelation = 0;
+        for (int lag = 1; lag < n / 2; lag++) {
+            double sum = 0;
+            for (int i = lag; i < n; i++) {
+                sum += (counts[i] - mean) * (counts[i - lag] - mean);
+            }
+            double correlation = sum / variance;
+            if (!crossed) {
+                crossed = correlation < 0;
+            } else if (correlation > bestCorrelation) {
+                best = lag;
+                bestCorrelation = correlation;
+            } else if (best > 0 && correlation < previous) {
+                // Past the first peak after the crossing.
+                return best;
+            }
+            previous = correlation;
+        }
+        // No peak within half the run, or still rising at its end.
+        return 0;
+    }
+
+    /**
+     * @return The number of points.
+     */
+    public int getPoints() {
+        return design.length;
+    }
+
+    /**
+     * @return The value of a factor at a point.
+     */
+    public double getValue(int point, int factor) {
+        return design[point][factor];
+    }
+
+    /**
+     * @return The first step at which one of the species had died out, or -1 if none did.
+     */
+    public int getExtinctionStep(int point) {
+        return extinctionSteps[point];
+    }
+
+    /**
+     * @return The mean population of a species over the run of a point.
+     */
+    public double getMean(int point, Class<?> type) {
+        return means[point][indexOf(type)];
+    }
+
+    /**
+     * @return The oscillation period of a species in the run of a point, or 0 if it did not oscillate.
+     */
+    public int getPeriod(int point, Class<?> type) {
+        return periods[point][indexOf(type)];
+    }
+
+    /**
+     * Write one row per point, with the values of the factors, the extinction
+     * step and the mean and period of every population, as comma-separated
+     * values with a header.
+     *
+     * @param out Where to write.
+     * @throws IOException If writing fails.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder("Point");
+        for (String factor : factors) {
+            line.append(',').append(factor);
+        }
+        line.append(",ExtinctionStep");
+        for (Class<?> type : species) {
+            String name = type.getSimpleName();
+            line.append(',').append(name).append("Mean");
+            line.append(',').append(name).append("Period");
+        }
+        out.write(line.append('\n').toString());
+        for (int point = 0; point < design.length; point++) {
+            line.setLength(0);
+            line.append(point);
+            for (double value : design[point]) {
+                line.append(',').append(value);
+            }
+            line.append(',').append(extinctionSteps[point]);
+            for (int s = 0; s < species.length; s++) {
+                line.append(',').append(means[point][s]);
+                line.append(',').append(periods[point][s]);
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    /**
+     * @return The index of a species among those summarised.
+     */
+    private int indexOf(Class<?> type) {
+        for (int s = 0; s < species.length; s++) {
+            if (species[s] == type) {
+                return s;
+            }
+        }
+        throw new IllegalArgumentException("No populations summarised for " + type.getSimpleName());
+    }
+}
@@ -1,8 +1,5 @@
 package no.ntnu.predpreysim;
 
-import javax.swing.*;
-import java.awt.Color;
-
 /**
  * The TextView provides a view of the populations of actors in the field as text.
  * In its current version, it can only plot exactly two different classes of 
@@ -27,25 +24,6 @@ public class TextView implements SimulatorView
         stats = new FieldStats();
     }
 
-    /**
-     * Define a color to be used for a given class of animal.
-     * Not used in this view.
-     * @param animalClass The animal's Class object.
-     * @param color The color to be used for the given class.
-     */
-    public void setColor(Class animalClass, Color color)
-    {
-    }
-
-    /**
-     * Determine whether the simulation should continue to run.
-     * @return true If there is more than one species alive.
-     */
-    public boolean isViable(Field field)
-    {
-        return stats.isViable(field);
-    }
-
     /**
      * Show the current status of the field.
      * @param step Which iteration step it is.
@@ -59,11 +37,6 @@ public class TextView implements SimulatorView
         System.out.println(POPULATION_PREFIX + details);
     }
 
-    @Override
-    public JComponent getJComponentView() {
-        return null;
-    }
-
     /**
      * Prepare for a new run.
      */
@@ -0,0 +1,80 @@
+package no.ntnu.predpreysim;
+
+import java.util.Arrays;
+
+/**
+ * A layer bitmap split into tiles of 64 x 64 positions, one word per tile row.
+ * A tile is only allocated once one of its bits is set and is dropped again when
+ * its last bit is cleared, so a mostly empty layer costs little more than the tile index.
+ *
+ * @author asty
+ */
+class TiledLayerBitmap implements LayerBitmap {
+    // The number of tiles across a row of tiles; also the number of words per row.
+    private final int tilesWide;
+    // The tiles, row of tiles by row of tiles. Missing tiles have no bits set.
+    private final long[][] tiles;
+
+    /**
+     * Create an empty bitmap for a layer of the given size.
+     *
+     * @param height The number of rows.
+     * @param width  The number of columns.
+     */
+    TiledLayerBitmap(int height, int width) {
+        tilesWide = (width + 63) >>> 6;
+        tiles = new long[((height + 63) >>> 6) * tilesWide][];
+    }
+
+    @Override
+    public void set(int row, int col) {
+        int index = (row >>> 6) * tilesWide + (col >>> 6);
+        long[] tile = tiles[index];
+        if (tile == null) {
+            tile = new long[64];
+            tiles[index] = tile;
+        }
+        tile[row & 63] |= 1L << col;
+    }
+
+    @Override
+    public void clear(int row, int col) {
+        int index = (row >>> 6) * tilesWide + (col >>> 6);
+        long[] tile = tiles[index];
+        if (tile != null) {
+            tile[row & 63] &= ~(1L << col);
+            if (tile[row & 63] == 0 && isEmpty(tile)) {
+                tiles[index] = null;
+            }
+        }
+    }
+
+    @Override
+    public boolean get(int row, int col) {
+        long[] tile = tiles[(row >>> 6) * tilesWide + (col >>> 6)];
+        return tile != null && (tile[row & 63] & (1L << col)) != 0;
+    }
+
+    @Override
+    public long word(int row, int wordIndex) {
+        long[] tile = tiles[(row >>> 6) * tilesWide + wordIndex];
+        return tile == null ? 0 : tile[row & 63];
+    }
+
+    @Override
+    public void clearAll() {
+        Arrays.fill(tiles, null);
+    }
+
+    /**
+     * @return true if no bit of the tile is set.
+     */
+    private static boolean isEmpty(long[] tile) {
+        for (long word : tile) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
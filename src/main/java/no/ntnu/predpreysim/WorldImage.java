@@ -0,0 +1,495 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Actor;
+import no.ntnu.predpreysim.actor.ActorState;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prebuilt world in a file that is memory-mapped rather than read: the shape
+ * and parameters of a field and the actors in it. Loading an image marks the
+ * occupied cells of a new field straight from the mapped records, without
+ * drawing a random number or making a single actor. Each actor is made the
+ * first time its cell or its place in the list is looked at, which for most
+ * of them is when they first act, so a large scenario is ready at once.
+ * <p>
+ * The file starts with a preamble giving the number of actors, the bound on
+ * the cell indices and where the sections start. Then come the shape,
+ * parameters and species table, written as in a {@link Checkpoint}, the
+ * actors as fixed-size records in list order, and an index giving the record
+ * numbers in the order of their cells. The actor in a cell is found by a binary
+ * search of the index, reading the cells from the records, so an image takes
+ * space for its actors only, however large or sparse the field. All numbers
+ * are big-endian. The state of the random generator is not
+ * part of an image, so one scenario can be run with any seed.
+ *
+ * @author asty
+ */
+final class WorldImage {
+    // "PPWI", the first bytes of every world image.
+    private static final int MAGIC = 0x50505749;
+    // The version of the format.
+    private static final int VERSION = 2;
+    // The size of the preamble: magic, version, actor count, cell bound and the offsets of two sections.
+    private static final int PREAMBLE_SIZE = 4 + 4 + 8 + 8 + 8 + 8;
+    // The size of an actor record: cell, age, food level or size, species and padding.
+    private static final int RECORD_SIZE = 8 + 4 + 4 + 2 + 2;
+    // The number of bits of a record number within a mapped segment of records.
+    private static final int RECORD_SEGMENT_BITS = 26;
+    private static final int RECORD_SEGMENT_MASK = (1 << RECORD_SEGMENT_BITS) - 1;
+
+    // The field the actors live in.
+    private final Field field;
+    // The species of the records, by their number in the species table.
+    private final Class<?>[] types;
+    // The actor records, in list order.
+    private final ByteBuffer[] records;
+    // The record numbers in the order of their cells.
+    private final ByteBuffer[] index;
+    // The number of records.
+    private final int count;
+    // Which records have had their actor made, one bit per record.
+    private final long[] made;
+    // The list the actors are made into, or null once it has let go of the image.
+    private Actors actors;
+    // The number of records whose actor has not been made.
+    private int remaining;
+
+    private WorldImage(Field field, Class<?>[] types, ByteBuffer[] records, ByteBuffer[] index, int count) {
+        this.field = field;
+        this.types = types;
+        this.records = records;
+        this.index = index;
+        this.count = count;
+        made = new long[(count + 63) >>> 6];
+        remaining = count;
+        actors = new Actors(this, count);
+    }
+
+    /**
+     * Write a world image of a field and its actors. Actors that died since they
+     * acted are left out.
+     *
+     * @param field   The field.
+     * @param actors  The actors; the active ones must all be in their cells, and
+     *                the field must hold no others.
+     * @param channel Where to write, open for reading and writing and empty.
+     * @throws IOException If writing fails.
+     */
+    static void write(Field field, List<Actor> actors, FileChannel channel) throws IOException {
+        Map<Class<?>, Integer> species = new HashMap<>();
+        List<Class<?>> types = new ArrayList<>();
+        int count = 0;
+        for (Actor actor : actors) {
+            if (!actor.isActive()) {
+                continue;
+            }
+            Location location = actor.getLocation();
+            if (location == null || field.getObjectAt(location) != actor) {
+                throw new IllegalStateException("Cannot save " + actor.getClass().getSimpleName()
+                        + " outside its cell");
+            }
+            count++;
+            if (!species.containsKey(actor.getClass())) {
+                species.put(actor.getClass(), types.size());
+                types.add(actor.getClass());
+            }
+        }
+        long occupied = 0;
+        for (int id = 0; id < Species.count(); id++) {
+            occupied += field.getCount(id);
+        }
+        if (occupied != count) {
+            throw new IllegalStateException("Cannot save a field holding actors outside the list of actors");
+        }
+
+        channel.position(PREAMBLE_SIZE);
+        Checkpoint.Output out = new Checkpoint.Output(channel);
+        out.ensure(4 * 3);
+        out.buffer.putInt(field.getHeight()).putInt(field.getWidth()).putInt(field.getDepth());
+        out.putString(field.getLayout().name());
+        out.putString(field.getStorage().name());
+        Checkpoint.writeParameters(field.getParameters(), out);
+        out.ensure(4);
+        out.buffer.putInt(types.size());
+        for (Class<?> type : types) {
+            out.putString(type.getName());
+        }
+        out.flush();
+
+        long recordsOffset = align(channel.position());
+        channel.position(recordsOffset);
+        long[] cells = new long[count];
+        int record = 0;
+        for (Actor actor : actors) {
+            if (actor.isActive()) {
+                long cell = field.getCell(actor.getLocation());
+                cells[record++] = cell;
+                out.ensure(RECORD_SIZE);
+                out.buffer.putLong(cell);
+                out.buffer.putInt(ActorState.getAge(actor));
+                out.buffer.putInt(ActorState.getState(actor));
+                out.buffer.putShort((short) (int) species.get(actor.getClass())).putShort((short) 0);
+            }
+        }
+        out.flush();
+
+        // No two actors share a cell, so each sorted cell is found once.
+        long indexOffset = align(channel.position());
+        channel.position(indexOffset);
+        long[] sorted = cells.clone();
+        Arrays.sort(sorted);
+        int[] order = new int[count];
+        for (record = 0; record < count; record++) {
+            order[Arrays.binarySearch(sorted, cells[record])] = record;
+        }
+        for (int number : order) {
+            out.ensure(Integer.BYTES);
+            out.buffer.putInt(number);
+        }
+        out.flush();
+        long limit = field.getCellLimit();
+
+        ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_SIZE);
+        preamble.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(limit);
+        preamble.putLong(recordsOffset).putLong(indexOffset).flip();
+        channel.position(0);
+        while (preamble.hasRemaining()) {
+            channel.write(preamble);
+        }
+    }
+
+    /**
+     * Load a world image into a new field. The channel may be closed once this
+     * returns; the mapping stays valid.
+     *
+     * @param channel Where to read, open for reading.
+     * @return The image, which gives the field and the list of its actors.
+     * @throws IOException If reading fails or the channel holds no world image.
+     */
+    static WorldImage load(FileChannel channel) throws IOException {
+        ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_SIZE);
+        channel.position(0);
+        while (preamble.hasRemaining()) {
+            if (channel.read(preamble) < 0) {
+                throw new EOFException("World image ends early");
+            }
+        }
+        preamble.flip();
+        if (preamble.getInt() != MAGIC) {
+            throw new IOException("Not a world image");
+        }
+        int version = preamble.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported world image version " + version);
+        }
+        long count = preamble.getLong();
+        long limit = preamble.getLong();
+        long recordsOffset = preamble.getLong();
+        long indexOffset = preamble.getLong();
+        long size = channel.size();
+        if (count < 0 || count > Integer.MAX_VALUE - 8 || limit < 0 || recordsOffset < PREAMBLE_SIZE
+                || indexOffset < recordsOffset || indexOffset > size
+                || count > (indexOffset - recordsOffset) / RECORD_SIZE
+                || count > (size - indexOffset) / Integer.BYTES) {
+            throw new IOException("Corrupt world image");
+        }
+
+        Checkpoint.Input in = new Checkpoint.Input(channel);
+        in.ensure(4 * 3);
+        int height = in.buffer.getInt();
+        int width = in.buffer.getInt();
+        int depth = in.buffer.getInt();
+        FieldLayout layout;
+        FieldStorage storage;
+        try {
+            layout = FieldLayout.valueOf(in.getString());
+            storage = FieldStorage.valueOf(in.getString());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown field layout or storage", e);
+        }
+        if ((long) height * width * depth > limit) {
+            throw new IOException("World image does not fit its field");
+        }
+        Field field;
+        try {
+            field = new Field(height, width, depth, layout, storage);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt world image: bad field shape", e);
+        }
+        field.setParameters(Checkpoint.readParameters(in));
+        in.ensure(4);
+        int typeCount = in.buffer.getInt();
+        if (typeCount < 0 || typeCount > Short.MAX_VALUE + 1) {
+            throw new IOException("Corrupt world image: " + typeCount + " species");
+        }
+        Class<?>[] types = new Class<?>[typeCount];
+        for (int t = 0; t < types.length; t++) {
+            types[t] = Checkpoint.classNamed(in.getString());
+        }
+        if (field.getCellLimit() != limit) {
+            throw new IOException("World image does not fit its field");
+        }
+
+        WorldImage image = new WorldImage(field, types,
+                map(channel, MapMode.READ_ONLY, recordsOffset, count, RECORD_SEGMENT_BITS, RECORD_SIZE),
+                map(channel, MapMode.READ_ONLY, indexOffset, count, RECORD_SEGMENT_BITS, Integer.BYTES),
+                (int) count);
+        image.occupy();
+        return image;
+    }
+
+    /**
+     * @return The field, whose cells hold the actors of the image.
+     */
+    Field getField() {
+        return field;
+    }
+
+    /**
+     * @return The actors of the image, in list order, made as they are read.
+     */
+    List<Actor> getActors() {
+        return actors;
+    }
+
+    /**
+     * Mark the cell of every record in the field, checking that the index names
+     * every record once, in the order of strictly increasing cells.
+     */
+    private void occupy() throws IOException {
+        int[] ids = new int[types.length];
+        for (int t = 0; t < types.length; t++) {
+            ids[t] = Species.idOf(types[t]);
+        }
+        long previous = -1;
+        for (int i = 0; i < count; i++) {
+            int record = getIndex(i);
+            if (record < 0 || record >= count) {
+                throw new IOException("Corrupt world image: index entry " + i);
+            }
+            long cell = getRecordCell(record);
+            int type = records[record >>> RECORD_SEGMENT_BITS]
+                    .getShort((record & RECORD_SEGMENT_MASK) * RECORD_SIZE + 16);
+            if (cell <= previous || !field.isCell(cell) || type < 0 || type >= types.length) {
+                throw new IOException("Corrupt world image: record " + record);
+            }
+            previous = cell;
+            field.occupy(cell, ids[type]);
+        }
+        if (remaining > 0) {
+            field.setImage(this);
+        }
+    }
+
+    /**
+     * Make the actor of a cell, if the image has one there that has not been made.
+     *
+     * @param cell The cell.
+     * @return The actor, or null.
+     */
+    Actor materialise(long cell) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int record = getIndex(middle);
+            long found = getRecordCell(record);
+            if (found < cell) {
+                low = middle + 1;
+            } else if (found > cell) {
+                high = middle - 1;
+            } else {
+                return (made[record >>> 6] & 1L << record) != 0 ? null : make(record);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Make the actor of a record and put it in its place in the list.
+     */
+    private Actor make(int record) {
+        made[record >>> 6] |= 1L << record;
+        ByteBuffer segment = records[record >>> RECORD_SEGMENT_BITS];
+        int offset = (record & RECORD_SEGMENT_MASK) * RECORD_SIZE;
+        Actor actor = field.materialise(types[segment.getShort(offset + 16)], segment.getLong(offset),
+                segment.getInt(offset + 8), segment.getInt(offset + 12));
+        if (actors != null) {
+            actors.fill(record, actor);
+        }
+        if (--remaining == 0) {
+            field.setImage(null);
+            if (actors != null) {
+                actors.image = null;
+                actors = null;
+            }
+        }
+        return actor;
+    }
+
+    /**
+     * Give up the actors that have not been made, as when the field is cleared.
+     * They are dropped from the list as well.
+     */
+    void detach() {
+        if (actors != null) {
+            actors.dropUnmade();
+            actors.image = null;
+            actors = null;
+        }
+        remaining = 0;
+    }
+
+    /**
+     * Map a section of the file in segments of 2^bits entries.
+     */
+    private static ByteBuffer[] map(FileChannel channel, MapMode mode, long offset, long count, int bits, int size)
+            throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[(int) ((count + (1L << bits) - 1) >>> bits)];
+        for (int i = 0; i < segments.length; i++) {
+            long first = (long) i << bits;
+            long entries = Math.min(count - first, 1L << bits);
+            segments[i] = channel.map(mode, offset + first * size, entries * size);
+        }
+        return segments;
+    }
+
+    /**
+     * @return The record number at a position of the index.
+     */
+    private int getIndex(int i) {
+        return index[i >>> RECORD_SEGMENT_BITS].getInt((i & RECORD_SEGMENT_MASK) * Integer.BYTES);
+    }
+
+    /**
+     * @return The cell of a record.
+     */
+    private long getRecordCell(int record) {
+        return records[record >>> RECORD_SEGMENT_BITS].getLong((record & RECORD_SEGMENT_MASK) * RECORD_SIZE);
+    }
+
+    /**
+     * @return The offset rounded up to a multiple of 8.
+     */
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * The list of actors of a world image. It starts with an empty slot per
+     * record, and an actor is made when its slot is read or its cell is looked
+     * at first. Slots stay where they are until every actor has been made:
+     * changes that would move them make all the remaining actors first. The
+     * step engines read the whole list before they change it, so this only
+     * happens when the list is changed by other means.
+     */
+    static final class Actors extends ActorList {
+        // The image the empty slots are filled from, or null once every actor is made.
+        private WorldImage image;
+
+        Actors(WorldImage image, int count) {
+            this.image = image;
+            addAll(Collections.nCopies(count, null));
+        }
+
+        @Override
+        public Actor get(int index) {
+            Actor actor = super.get(index);
+            if (actor == null && image != null) {
+                actor = image.make(index);
+            }
+            return actor;
+        }
+
+        @Override
+        public Actor set(int index, Actor actor) {
+            Actor old = get(index);
+            super.set(index, actor);
+            return old;
+        }
+
+        @Override
+        public void add(int index, Actor actor) {
+            makeAll();
+            super.add(index, actor);
+        }
+
+        @Override
+        public Actor remove(int index) {
+            makeAll();
+            return super.remove(index);
+        }
+
+        @Override
+        protected void removeRange(int from, int to) {
+            makeAll();
+            super.removeRange(from, to);
+        }
+
+        @Override
+        public int removeInactive() {
+            makeAll();
+            return super.removeInactive();
+        }
+
+        /**
+         * Drop every actor from the given position on. The actors before it are
+         * made first; those after it that have not been made are left to the
+         * field alone, as the actors dropped from any list are.
+         */
+        @Override
+        public void truncate(int length) {
+            if (image != null && length < size()) {
+                for (int i = 0; i < length; i++) {
+                    get(i);
+                }
+                if (image != null) {
+                    image.actors = null;
+                    image = null;
+                }
+            }
+            super.truncate(length);
+        }
+
+        /**
+         * Put a newly made actor in its slot.
+         */
+        private void fill(int index, Actor actor) {
+            super.set(index, actor);
+        }
+
+        /**
+         * Make every actor that has not been made yet.
+         */
+        private void makeAll() {
+            for (int i = 0; image != null && i < size(); i++) {
+                get(i);
+            }
+        }
+
+        /**
+         * Drop the empty slots, keeping the order of the actors that were made.
+         */
+        private void dropUnmade() {
+            int kept = 0;
+            for (int i = 0; i < size(); i++) {
+                Actor actor = super.get(i);
+                if (actor != null) {
+                    super.set(kept++, actor);
+                }
+            }
+            super.truncate(kept);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package no.ntnu.predpreysim.actor;
 
+import no.ntnu.predpreysim.Location;
+
 import java.util.List;
 
 /**
@@ -28,4 +30,16 @@ public interface Actor
      * @return int the layer value.
      */
     abstract public int getLayerValue();
+
+    /**
+     * Get the location of this actor.
+     * @return The location, or null if the actor is not in a field.
+     */
+    abstract public Location getLocation();
+
+    /**
+     * Move this actor to a new location in its field.
+     * @param location The new location.
+     */
+    abstract public void setLocation(Location location);
 }
@@ -0,0 +1,115 @@
+package no.ntnu.predpreysim.actor;
+
+import no.ntnu.predpreysim.Field;
+import no.ntnu.predpreysim.Location;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Reads the state of an actor out as plain numbers, and makes an actor again
+ * from them, so that a simulation can be saved and resumed. An organism is
+ * its species, its location, its age, and one more number: the food level of
+ * an animal or the size of a plant.
+ *
+ * @author asty
+ */
+public final class ActorState {
+    // The constructor each species is made again with, found on first use.
+    private static final ClassValue<Constructor<?>> constructors = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type) {
+            try {
+                return type.getConstructor(boolean.class, Field.class, Location.class);
+            } catch (NoSuchMethodException e) {
+                try {
+                    return type.getConstructor(Field.class, Location.class);
+                } catch (NoSuchMethodException none) {
+                    throw new IllegalArgumentException("Cannot make a " + type.getSimpleName() + " again");
+                }
+            }
+        }
+    };
+
+    private ActorState() {
+    }
+
+    /**
+     * @return The age of an organism, or 0 for any other actor.
+     */
+    public static int getAge(Actor actor) {
+        return actor instanceof Organism ? ((Organism) actor).getAge() : 0;
+    }
+
+    /**
+     * @return The food level of an animal, the size of a plant, or 0 for any other actor.
+     */
+    public static int getState(Actor actor) {
+        if (actor instanceof Animal) {
+            return ((Animal) actor).getFoodLevel();
+        }
+        if (actor instanceof Plant) {
+            return ((Plant) actor).getSize();
+        }
+        return 0;
+    }
+
+    /**
+     * Return the key that orders an organism in the list of actors for a chain
+     * of checkpoints. Keys are handed out by the chain; a newborn has none.
+     *
+     * @return The key, or 0 if the organism has none yet.
+     * @throws IllegalArgumentException If the actor is not an organism.
+     */
+    public static long getKey(Actor actor) {
+        return organism(actor).getListKey();
+    }
+
+    /**
+     * Give an organism the key that orders it in the list of actors.
+     *
+     * @throws IllegalArgumentException If the actor is not an organism.
+     */
+    public static void setKey(Actor actor, long key) {
+        organism(actor).setListKey(key);
+    }
+
+    private static Organism organism(Actor actor) {
+        if (!(actor instanceof Organism)) {
+            throw new IllegalArgumentException("Cannot order a " + actor.getClass().getSimpleName());
+        }
+        return (Organism) actor;
+    }
+
+    /**
+     * Make an actor again, alive at the given location, with a saved age and state.
+     * No random numbers are drawn.
+     *
+     * @param type     The class of the actor.
+     * @param field    The field to live in.
+     * @param location The location within the field.
+     * @param age      The age, as getAge returned it.
+     * @param state    The food level or size, as getState returned it.
+     * @return The actor.
+     */
+    public static Actor restore(Class<?> type, Field field, Location location, int age, int state) {
+        Constructor<?> constructor = constructors.get(type);
+        Actor actor;
+        try {
+            actor = (Actor) (constructor.getParameterCount() == 3
+                    ? constructor.newInstance(false, field, location)
+                    : constructor.newInstance(field, location));
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalArgumentException("Cannot make a " + type.getSimpleName() + " again", e);
+        }
+        if (actor instanceof Organism) {
+            ((Organism) actor).restoreAge(age);
+        }
+        if (actor instanceof Animal) {
+            ((Animal) actor).restoreFoodLevel(state);
+        } else if (actor instanceof Plant) {
+            ((Plant) actor).restoreSize(state);
+        }
+        return actor;
+    }
+}
@@ -2,6 +2,7 @@ package no.ntnu.predpreysim.actor;
 
 import no.ntnu.predpreysim.Field;
 import no.ntnu.predpreysim.Location;
+import no.ntnu.predpreysim.Neighbourhood;
 import no.ntnu.predpreysim.Randomizer;
 
 import java.util.List;
@@ -18,8 +19,6 @@ public abstract class Animal extends Organism implements Edible
     // A shared random number generator to control breeding.
     private static final Random rand = Randomizer.getRandom();
 
-    private int layer = 1;
-
     private int foodLevel;
 
     /**
@@ -40,6 +39,12 @@ public abstract class Animal extends Organism implements Edible
         }
     }
 
+    @Override
+    protected void reinitialise(Field field, Location location) {
+        super.reinitialise(field, location);
+        setFoodLevel(this.getMaxFoodValue());
+    }
+
     /**
      * Return the maximum food value for a specific type of animal.
      * This is synonymous with how much it can eat.
@@ -49,16 +54,27 @@ public abstract class Animal extends Organism implements Edible
 
     abstract public int getFoodFactor();
 
+    /**
+     * Set the food level as it was saved, without the cap setFoodLevel applies.
+     */
+    void restoreFoodLevel(int foodLevel) {
+        this.foodLevel = foodLevel;
+    }
+
     protected int getFoodLevel() {
         return this.foodLevel;
     }
 
     protected void setFoodLevel(int foodLevel) {
+        int previous = this.foodLevel;
         if (foodLevel > this.getMaxFoodValue()) {
             this.foodLevel = this.getMaxFoodValue();
         } else {
             this.foodLevel = foodLevel;
         }
+        if (this.foodLevel != previous) {
+            markChanged();
+        }
     }
 
     /**
@@ -79,11 +95,6 @@ public abstract class Animal extends Organism implements Edible
      */
     abstract public int getMaxLitterSize();
 
-    @Override
-    public int getLayerValue() {
-        return this.layer;
-    }
-
     /**
      * Make this animal more hungry. This could result in the animal's death.
      */
@@ -101,14 +112,20 @@ public abstract class Animal extends Organism implements Edible
      */
     protected void giveBirth(List<Actor> newborn)
     {
-        // New rabbits are born into adjacent locations.
-        // Get a list of adjacent free locations.
+        // New animals are born into free adjacent locations on the same layer.
+        // The search skips the cells of the earlier siblings, which during a
+        // buffered step are still free in the field.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocationsOnLayer(getLocation());
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            newborn.add(createOrganism(false, field, loc));
+        long[] taken = new long[births];
+        for(int b = 0; b < births; b++) {
+            long cell = field.randomFreeNeighbour(field.getCell(getLocation()), 1, Neighbourhood.RING_ON_LAYER,
+                                                  taken, b);
+            if (cell == Field.NO_CELL) {
+                break;
+            }
+            taken[b] = cell;
+            newborn.add(newborn(field, field.getLocation(cell)));
         }
     }
 
@@ -137,11 +154,15 @@ public abstract class Animal extends Organism implements Edible
 
 
     protected void eat(Edible edible) {
-        int foodValue = this.getFoodFactor() * edible.getFoodValue();
-        int newFoodLevel = this.getFoodLevel() + foodValue;
-        this.setFoodLevel(newFoodLevel);
-
-        edible.getEaten();
+        // During a buffered step the meal is a claim, and only one eater gets the food when the step ends.
+        getField().claimMeal(this, edible, () -> {
+            int foodValue = this.getFoodFactor() * edible.getFoodValue();
+            int newFoodLevel = this.getFoodLevel() + foodValue;
+            this.setFoodLevel(newFoodLevel);
+
+            // Being eaten is up to the food.
+            edible.getEaten();
+        });
     }
 
 
@@ -3,9 +3,10 @@ package no.ntnu.predpreysim.actor;
 import no.ntnu.predpreysim.ExponentialGenerator;
 import no.ntnu.predpreysim.Field;
 import no.ntnu.predpreysim.Location;
+import no.ntnu.predpreysim.Neighbourhood;
 import no.ntnu.predpreysim.Randomizer;
+import no.ntnu.predpreysim.Species;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
@@ -17,7 +18,7 @@ import java.util.Random;
  * @version 2016.02.29
  */
 public class Fox extends Animal {
-    // Characteristics shared by all foxes (class variables).
+    // The characteristics of a fox unless a simulation sets others, see defaultParameters().
 
     // The age at which a fox can start to breed.
     private static final int BREEDING_AGE = 15;
@@ -36,9 +37,11 @@ public class Fox extends Animal {
     // A shared random number generator to control breeding.
     private static final Random rand = Randomizer.getRandom();
     private static final ExponentialGenerator expRand = new ExponentialGenerator(0.4, rand);
+    // The species a fox eats.
+    private static final long PREY = Species.setOf(Rabbit.class);
 
     // The allowed layer location.
-    private int layer = 2;
+    private static final int LAYER = 2;
     // Individual characteristics (instance fields).
 
     /**
@@ -53,6 +56,14 @@ public class Fox extends Animal {
         super(randomAge, field, location);
     }
 
+    /**
+     * @return The characteristics foxes are written with.
+     */
+    public static SpeciesParameters defaultParameters() {
+        return new SpeciesParameters(BREEDING_AGE, MAX_AGE, BREEDING_PROBABILITY, MAX_LITTER_SIZE,
+                FOOD_FACTOR, FOOD_VALUE, MAX_FOOD_VALUE);
+    }
+
     /**
      * This is what the fox does most of the time: it hunts for
      * rabbits. In the process, it might breed, die of hunger,
@@ -75,7 +86,7 @@ public class Fox extends Animal {
 
                 if (edible instanceof Organism) {
                     Organism organism = (Organism) edible;
-                    organism.setDead();
+                    organism.kill();
                 }
                 newLocation = foodLocation;
 
@@ -92,8 +103,7 @@ public class Fox extends Animal {
 
             // Move towards a source of food if found.
             if (newLocation != null) {
-                newLocation.setZindex(this.getLayerValue());
-                setLocation(newLocation);
+                setLocation(onOwnLayer(newLocation));
             } else {
                 // Overcrowding.
                 setDead();
@@ -107,12 +117,12 @@ public class Fox extends Animal {
      * @return The animal's maximum age.
      */
     public int getMaxAge() {
-        return MAX_AGE;
+        return getParameters().getMaxAge();
     }
 
     @Override
     public int getMaxFoodValue() {
-        return MAX_FOOD_VALUE;
+        return getParameters().getMaxFoodValue();
     }
 
     /**
@@ -121,7 +131,7 @@ public class Fox extends Animal {
      * @return The fox's breeding age.
      */
     public int getBreedingAge() {
-        return BREEDING_AGE;
+        return getParameters().getBreedingAge();
     }
 
 
@@ -131,7 +141,7 @@ public class Fox extends Animal {
      * @return The fox's probability age.
      */
     public double getBreedingProbability() {
-        return BREEDING_PROBABILITY;
+        return getParameters().getBreedingProbability();
     }
 
     /**
@@ -140,16 +150,16 @@ public class Fox extends Animal {
      * @return The fox's maximum litter size.
      */
     public int getMaxLitterSize() {
-        return MAX_LITTER_SIZE;
+        return getParameters().getMaxLitterSize();
     }
 
     public int getFoodFactor() {
-        return FOOD_FACTOR;
+        return getParameters().getFoodFactor();
     }
 
 
     public int getFoodValue() {
-        return FOOD_VALUE;
+        return getParameters().getFoodValue();
     }
 
     @Override
@@ -159,31 +169,12 @@ public class Fox extends Animal {
 
     /**
      * Look for rabbits adjacent to the current location.
-     * Only the first live rabbit is eaten.
+     * A random one of them is eaten.
      *
      * @return Where food was found, or null if it wasn't.
      */
     private Location findFood() {
-        Field field = getField();
-
-        boolean foundPrey = false;
-        Location preyLocation = null;
-
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while (it.hasNext() && !foundPrey) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if (animal instanceof Rabbit) {
-                Rabbit rabbit = (Rabbit) animal;
-                if (rabbit.isAlive()) {
-                    foundPrey = true;
-                    preyLocation = where;
-                }
-            }
-        }
-
-        return preyLocation;
+        return getField().randomNeighbourOfSpecies(getLocation(), 1, Neighbourhood.RING_OTHER_LAYERS, PREY);
     }
 
     /**
@@ -201,7 +192,7 @@ public class Fox extends Animal {
 
     @Override
     public int getLayerValue() {
-        return this.layer;
+        return LAYER;
     }
 
 }
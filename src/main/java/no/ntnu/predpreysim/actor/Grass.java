@@ -7,7 +7,7 @@ import java.util.List;
 
 public class Grass extends Plant implements Edible{
 
-    // Characteristics shared by all grasss (class variables).
+    // The characteristics of a grass unless a simulation sets others, see defaultParameters().
 
     // The age at which a grass can start to breed.
     private static final int BREEDING_AGE = 3;
@@ -36,6 +36,14 @@ public class Grass extends Plant implements Edible{
         super(randomAge, field, location);
     }
 
+    /**
+     * @return The characteristics grass is written with.
+     */
+    public static SpeciesParameters defaultParameters() {
+        return new SpeciesParameters(BREEDING_AGE, MAX_AGE, BREEDING_PROBABILITY, MAX_LITTER_SIZE,
+                0, FOOD_VALUE, 0);
+    }
+
     @Override
     /**
      * This is what the grass does most of the time - it spreads.
@@ -53,22 +61,22 @@ public class Grass extends Plant implements Edible{
 
     @Override
     public int getMaxAge() {
-        return MAX_AGE;
+        return getParameters().getMaxAge();
     }
 
     @Override
     public int getBreedingAge() {
-        return BREEDING_AGE;
+        return getParameters().getBreedingAge();
     }
 
     @Override
     public double getBreedingProbability() {
-        return BREEDING_PROBABILITY;
+        return getParameters().getBreedingProbability();
     }
 
     @Override
     public int getMaxLitterSize() {
-        return MAX_LITTER_SIZE;
+        return getParameters().getMaxLitterSize();
     }
 
     @Override
@@ -78,7 +86,7 @@ public class Grass extends Plant implements Edible{
 
     @Override
     public int getFoodValue() {
-        return FOOD_VALUE;
+        return getParameters().getFoodValue();
     }
 
     @Override
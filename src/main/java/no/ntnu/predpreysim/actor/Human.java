@@ -16,7 +16,7 @@ import java.util.Random;
  */
 
 public class Human extends Animal {
-    // Characteristics shared by all humans (class variables).
+    // The characteristics of a human unless a simulation sets others, see defaultParameters().
 
     // The age at which a human can start to breed.
     private static final int BREEDING_AGE = 5;
@@ -35,7 +35,7 @@ public class Human extends Animal {
 
 
     // The allowed layer location.
-    private int layer = 2;
+    private static final int LAYER = 2;
     // Individual characteristics (instance fields).
     // The fox's food level, which is increased by eating rabbits.
 
@@ -53,6 +53,14 @@ public class Human extends Animal {
 
     }
 
+    /**
+     * @return The characteristics humans are written with.
+     */
+    public static SpeciesParameters defaultParameters() {
+        return new SpeciesParameters(BREEDING_AGE, MAX_AGE, BREEDING_PROBABILITY, MAX_LITTER_SIZE,
+                FOOD_FACTOR, 0, MAX_FOOD_LEVEL);
+    }
+
 
     /**
      * Perform the human’s regular behavior.
@@ -74,8 +82,7 @@ public class Human extends Animal {
             }
             // See if it was possible to move.
             if (newLocation != null) {
-                newLocation.setZindex(this.getLayerValue());
-                setLocation(newLocation);
+                setLocation(onOwnLayer(newLocation));
             } else {
                 // Overcrowding.
                 setDead();
@@ -101,17 +108,17 @@ public class Human extends Animal {
      */
 
     public int getMaxAge() {
-        return MAX_AGE;
+        return getParameters().getMaxAge();
     }
 
     @Override
     public int getMaxFoodValue() {
-        return MAX_FOOD_LEVEL;
+        return getParameters().getMaxFoodValue();
     }
 
     @Override
     public int getFoodFactor() {
-        return FOOD_FACTOR;
+        return getParameters().getFoodFactor();
     }
 
 
@@ -122,7 +129,7 @@ public class Human extends Animal {
      */
 
     public int getBreedingAge() {
-        return BREEDING_AGE;
+        return getParameters().getBreedingAge();
     }
 
 
@@ -133,7 +140,7 @@ public class Human extends Animal {
      */
 
     public double getBreedingProbability() {
-        return BREEDING_PROBABILITY;
+        return getParameters().getBreedingProbability();
     }
 
     /**
@@ -142,7 +149,7 @@ public class Human extends Animal {
      * @return The fox's maximum litter size.
      */
     public int getMaxLitterSize() {
-        return MAX_LITTER_SIZE;
+        return getParameters().getMaxLitterSize();
     }
 
 
@@ -160,12 +167,12 @@ public class Human extends Animal {
 
     @Override
     public int getLayerValue() {
-        return this.layer;
+        return LAYER;
     }
 
     @Override
     public int getFoodValue() {
-        return 0;
+        return getParameters().getFoodValue();
     }
 
     @Override
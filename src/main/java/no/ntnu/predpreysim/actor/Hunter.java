@@ -2,8 +2,9 @@ package no.ntnu.predpreysim.actor;
 
 import no.ntnu.predpreysim.Field;
 import no.ntnu.predpreysim.Location;
+import no.ntnu.predpreysim.Neighbourhood;
+import no.ntnu.predpreysim.Species;
 
-import java.util.Iterator;
 import java.util.List;
 
 
@@ -17,6 +18,8 @@ import java.util.List;
 public class Hunter extends Human {
     // The maximum number of animals to be killed at any one step.
     private static final int MAX_KILLS = 2;
+    // The species a hunter kills.
+    private static final long PREY = Species.setOf(Rabbit.class, Fox.class);
     /**
      * Constructor for objects of class Hunter
      */
@@ -45,18 +48,19 @@ public class Hunter extends Human {
      */
 
     public void act(List<Actor> newHunters) {
-        int kills = 0;
-        List<Location> adjacent = getField().adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-
-        while (it.hasNext() && kills < MAX_KILLS) {
-            Location where = it.next();
-            Object actor = getField().getObjectAt(where);
-            if (actor instanceof Rabbit || actor instanceof Fox) {
-                Organism organism = (Organism) actor;
-                organism.setDead();
-                kills++;
+        Field field = getField();
+        // The search skips the animals killed already, which during a buffered
+        // step stay in the field until the step ends.
+        long[] killed = new long[MAX_KILLS];
+        for (int kills = 0; kills < MAX_KILLS; kills++) {
+            long prey = field.randomNeighbourOfSpecies(field.getCell(getLocation()), 1,
+                                                       Neighbourhood.RING_OTHER_LAYERS, PREY, killed, kills);
+            if (prey == Field.NO_CELL) {
+                break;
             }
+            killed[kills] = prey;
+            Organism organism = (Organism) field.getObjectAt(prey);
+            organism.kill();
         }
         // Try to move to a free adjacent location.
         Location newLocation = getField().freeAdjacentLocationOnLayer(getLocation());
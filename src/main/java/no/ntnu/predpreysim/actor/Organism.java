@@ -11,8 +11,6 @@ public abstract class Organism implements Actor {
 
     // A shared random number generator to control breeding.
     private static final Random rand = Randomizer.getRandom();
-    // The allowed layer location.
-    private int layer = 1;
     // The animal's age.
     private int age;
     // Whether the animal is alive or not.
@@ -21,6 +19,12 @@ public abstract class Organism implements Actor {
     private Field field;
     // The animal's position in the field.
     private Location location;
+    // Whether the organism is dead and waiting in its pool.
+    private boolean pooled;
+    // The characteristics of the species, taken from the field it was born in.
+    private SpeciesParameters parameters;
+    // Orders the organism in the list of actors for a chain of checkpoints, or 0 if it has none yet.
+    private long listKey;
 
 
     /**
@@ -33,16 +37,53 @@ public abstract class Organism implements Actor {
      * @param location  The location within the field.
      */
     public Organism(boolean randomAge, Field field, Location location) {
+        this.field = field;
+        parameters = field.getParameters().of(getClass());
         if (randomAge) {
             age = rand.nextInt(getMaxAge());
         } else {
             age = 0;
         }
         alive = true;
+        setLocation(location);
+    }
+
+    /**
+     * Start a dead organism again as a newborn of age zero at the given location.
+     * Subclasses reset their own state the way their constructor does for a
+     * newborn.
+     *
+     * @param field    The field to live in.
+     * @param location The location within the field.
+     */
+    protected void reinitialise(Field field, Location location) {
+        age = 0;
+        alive = true;
         this.field = field;
+        parameters = field.getParameters().of(getClass());
+        listKey = 0;
+        this.location = null;
         setLocation(location);
     }
 
+    /**
+     * Create a newborn of this species, reusing a dead organism from the pool
+     * if there is one.
+     *
+     * @param field    The field the newborn lives in.
+     * @param location The location within the field.
+     * @return The newborn.
+     */
+    protected Organism newborn(Field field, Location location) {
+        OrganismPool pool = field.getOrganismPool();
+        Organism organism = pool == null ? null : pool.acquire(getClass());
+        if (organism == null) {
+            return createOrganism(false, field, location);
+        }
+        organism.reinitialise(field, location);
+        return organism;
+    }
+
     /**
      * Make this animal act - that is: make it do
      * whatever it wants/needs to do.
@@ -58,6 +99,15 @@ public abstract class Organism implements Actor {
      */
     abstract public int getMaxAge();
 
+    /**
+     * Return the characteristics of the species this organism lives by.
+     *
+     * @return The parameters of its species in its simulation.
+     */
+    protected SpeciesParameters getParameters() {
+        return parameters;
+    }
+
     /**
      * Return the animal's age.
      *
@@ -103,12 +153,26 @@ public abstract class Organism implements Actor {
 
 
 
+    /**
+     * Let this organism be killed by another actor. During a buffered step the
+     * death only takes effect when the step ends, so the organism still gets to
+     * act on the field as the step found it.
+     */
+    protected void kill() {
+        Field field = getField();
+        if (field == null) {
+            setDead();
+        } else {
+            field.defer(this::setDead);
+        }
+    }
+
     /**
      * Return the animal's location.
      *
      * @return The animal's location.
      */
-    protected Location getLocation() {
+    public Location getLocation() {
         return this.location;
     }
 
@@ -117,7 +181,7 @@ public abstract class Organism implements Actor {
      *
      * @param newLocation The animal's new location.
      */
-    protected void setLocation(Location newLocation) {
+    public void setLocation(Location newLocation) {
         if (location != null) {
             field.clear(location);
         }
@@ -125,6 +189,53 @@ public abstract class Organism implements Actor {
         field.place(this, newLocation);
     }
 
+    /**
+     * Tell the field that something a checkpoint saves about this organism,
+     * other than where it is, has changed.
+     */
+    protected void markChanged() {
+        if (location != null) {
+            field.markChanged(location);
+        }
+    }
+
+    /**
+     * Return the location at the same row and column as the given one,
+     * on the layer of this organism.
+     *
+     * @param location A location in the field.
+     * @return The matching location on this organism's layer.
+     */
+    protected Location onOwnLayer(Location location) {
+        return getField().getLocation(location.getRow(), location.getCol(), getLayerValue());
+    }
+
+    /**
+     * Set the age as it was saved.
+     */
+    void restoreAge(int age) {
+        this.age = age;
+    }
+
+    long getListKey() {
+        return listKey;
+    }
+
+    void setListKey(long listKey) {
+        this.listKey = listKey;
+    }
+
+    /**
+     * @return true if the organism is dead and waiting in its pool.
+     */
+    boolean isPooled() {
+        return pooled;
+    }
+
+    void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
     /**
      * Check whether the animal is alive or not.
      *
@@ -152,10 +263,4 @@ public abstract class Organism implements Actor {
     protected Field getField() {
         return this.field;
     }
-
-    @Override
-    public int getLayerValue() {
-        return this.layer;
-    }
-
 }
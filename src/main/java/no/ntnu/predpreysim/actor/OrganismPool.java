@@ -0,0 +1,149 @@
+package no.ntnu.predpreysim.actor;
+
+import no.ntnu.predpreysim.Field;
+import no.ntnu.predpreysim.Species;
+
+import java.util.Arrays;
+
+/**
+ * Keeps dead organisms, one pool per species, so that newborns can reuse them
+ * instead of being allocated. Each field has pools of its own, see
+ * {@link Field#getOrganismPool}, so simulations running side by side neither
+ * share nor wait for them, and the organisms kept go away with the field. A
+ * step engine hands an organism back once it has dropped it from the list of
+ * actors and nothing refers to it any more; a parent taking an organism from
+ * the pool starts it again as a newborn of age zero. A newborn does not draw
+ * random numbers, so the runs are the same with or without the pools.
+ * <p>
+ * The pools are not locked; they are used by one thread at a time.
+ * <p>
+ * Each pool counts how often it could hand out an organism (a hit) and how
+ * often a new one had to be made (a miss).
+ *
+ * @author asty
+ */
+public final class OrganismPool {
+    // The most dead organisms kept per species.
+    private static final int CAPACITY = 1 << 16;
+    // The pools, by species id, made when a species first dies.
+    private final Pool[] pools = new Pool[Species.MAX_SPECIES];
+    // Whether dead organisms are kept for reuse.
+    private boolean enabled = true;
+
+    /**
+     * Hand back an actor that has been dropped from the simulation. Only dead
+     * organisms are kept; anything else is left alone.
+     *
+     * @param actor The actor.
+     */
+    public void release(Actor actor) {
+        if (enabled && actor instanceof Organism && !actor.isActive()) {
+            Organism organism = (Organism) actor;
+            if (!organism.isPooled()) {
+                poolOf(organism.getClass()).put(organism);
+            }
+        }
+    }
+
+    /**
+     * Take a dead organism of the given species out of its pool.
+     *
+     * @param type The class of the organism.
+     * @return The organism, or null if the pool is empty.
+     */
+    Organism acquire(Class<?> type) {
+        return enabled ? poolOf(type).take() : null;
+    }
+
+    /**
+     * Turn the pools on or off. Turning them off empties them.
+     *
+     * @param on Whether dead organisms are kept for reuse.
+     */
+    public void setEnabled(boolean on) {
+        enabled = on;
+        if (!on) {
+            clear();
+        }
+    }
+
+    /**
+     * Empty the pools and zero their counters.
+     */
+    public void clear() {
+        Arrays.fill(pools, null);
+    }
+
+    /**
+     * @return How many newborns of the species reused a dead organism.
+     */
+    public long getHits(Class<?> type) {
+        Pool pool = pools[Species.idOf(type)];
+        return pool == null ? 0 : pool.hits;
+    }
+
+    /**
+     * @return How many newborns of the species had to be made new.
+     */
+    public long getMisses(Class<?> type) {
+        Pool pool = pools[Species.idOf(type)];
+        return pool == null ? 0 : pool.misses;
+    }
+
+    /**
+     * Return the share of newborns of a species that reused a dead organism.
+     *
+     * @param type The class of the organism.
+     * @return The hit rate, from 0 to 1; 0 if none has been born yet.
+     */
+    public double getHitRate(Class<?> type) {
+        long hits = getHits(type);
+        long births = hits + getMisses(type);
+        return births == 0 ? 0 : (double) hits / births;
+    }
+
+    private Pool poolOf(Class<?> type) {
+        int species = Species.idOf(type);
+        Pool pool = pools[species];
+        if (pool == null) {
+            pool = new Pool();
+            pools[species] = pool;
+        }
+        return pool;
+    }
+
+    /**
+     * The dead organisms of one species.
+     */
+    private static class Pool {
+        // The organisms; the first size slots are in use.
+        private Organism[] free = new Organism[16];
+        private int size;
+        // How many organisms were handed out, and how many were asked for in vain.
+        private long hits;
+        private long misses;
+
+        Organism take() {
+            if (size == 0) {
+                misses++;
+                return null;
+            }
+            hits++;
+            Organism organism = free[--size];
+            free[size] = null;
+            organism.setPooled(false);
+            return organism;
+        }
+
+        void put(Organism organism) {
+            if (size == free.length) {
+                if (size == CAPACITY) {
+                    return;
+                }
+                free = Arrays.copyOf(free, size * 2);
+            }
+            organism.setPooled(true);
+            free[size++] = organism;
+        }
+    }
+}
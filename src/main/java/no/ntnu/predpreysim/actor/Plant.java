@@ -3,6 +3,7 @@ package no.ntnu.predpreysim.actor;
 import no.ntnu.predpreysim.ExponentialGenerator;
 import no.ntnu.predpreysim.Field;
 import no.ntnu.predpreysim.Location;
+import no.ntnu.predpreysim.Neighbourhood;
 import no.ntnu.predpreysim.Randomizer;
 
 import java.util.List;
@@ -20,9 +21,9 @@ public abstract class Plant extends Organism implements Growable{
     private static final ExponentialGenerator expRand = new ExponentialGenerator(0.4, rand);
 
     // The allowed layer location.
-    private int layer = 0;
-
-    private int MAX_SIZE = 5;
+    private static final int LAYER = 0;
+    // The size at which a plant stops growing.
+    private static final int MAX_SIZE = 5;
     // The plant's size
     private int size = 1;
 
@@ -44,6 +45,13 @@ public abstract class Plant extends Organism implements Growable{
         }
     }
 
+    @Override
+    protected void reinitialise(Field field, Location location) {
+        super.reinitialise(field, location);
+        size = 1;
+        setSize(this.getMaxSize());
+    }
+
     /**
      * Make this plant act - that is: make it do
      * whatever it wants/needs to do.
@@ -94,17 +102,25 @@ public abstract class Plant extends Organism implements Growable{
      * @param newborn A list to add newly born plants to.
      */
     protected void giveBirth(List<Actor> newborn) {
-        // New rabbits are born into adjacent locations.
-        // Get a list of adjacent free locations.
+        // New plants are seeded into free locations on the same layer, at a
+        // random distance. The search skips the cells of the earlier seedlings,
+        // which during a buffered step are still free in the field.
         Field field = getField();
 
-        int distance = expRand.nextInt();
-        List<Location> free = field.getFreeAdjacentLocationsOnLayerWithDistance(getLocation(), distance);
-
         int births = breed();
-        for (int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            newborn.add(createOrganism(false, field, loc));
+        if (births == 0) {
+            return;
+        }
+        int distance = Math.min(expRand.nextInt(), field.getReach());
+        long[] taken = new long[births];
+        for (int b = 0; b < births; b++) {
+            long cell = field.randomFreeNeighbour(field.getCell(getLocation()), distance, Neighbourhood.RING_ON_LAYER,
+                                                  taken, b);
+            if (cell == Field.NO_CELL) {
+                break;
+            }
+            taken[b] = cell;
+            newborn.add(newborn(field, field.getLocation(cell)));
         }
 
 //        int x = field.getHeight() - 1;
@@ -123,11 +139,22 @@ public abstract class Plant extends Organism implements Growable{
     }
 
     protected void setSize(int size) {
+        int previous = this.size;
         if (this.getSize() > this.getMaxSize()) {
             this.size = this.getMaxSize();
         } else {
             this.size = size;
         }
+        if (this.size != previous) {
+            markChanged();
+        }
+    }
+
+    /**
+     * Set the size as it was saved, without the cut back setSize makes.
+     */
+    void restoreSize(int size) {
+        this.size = size;
     }
 
     @Override
@@ -165,6 +192,6 @@ public abstract class Plant extends Organism implements Growable{
 
     @Override
     public int getLayerValue() {
-        return this.layer;
+        return LAYER;
     }
 }
@@ -2,9 +2,10 @@ package no.ntnu.predpreysim.actor;
 
 import no.ntnu.predpreysim.Field;
 import no.ntnu.predpreysim.Location;
+import no.ntnu.predpreysim.Neighbourhood;
 import no.ntnu.predpreysim.Randomizer;
+import no.ntnu.predpreysim.Species;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
@@ -16,7 +17,7 @@ import java.util.Random;
  * @version 2016.02.29
  */
 public class Rabbit extends Animal {
-    // Characteristics shared by all rabbits (class variables).
+    // The characteristics of a rabbit unless a simulation sets others, see defaultParameters().
 
     // The age at which a rabbit can start to breed.
     private static final int BREEDING_AGE = 5;
@@ -34,6 +35,10 @@ public class Rabbit extends Animal {
     // A shared random number generator to control breeding.
     private static final Random rand = Randomizer.getRandom();
     private static final int MAX_FOOD_VALUE = 3;
+    // The allowed layer location.
+    private static final int LAYER = 1;
+    // The species a rabbit eats.
+    private static final long FOOD = Species.setOf(Grass.class, Flower.class);
     // Individual characteristics (instance fields).
     // The fox's food level, which is increased by eating rabbits.
 
@@ -49,6 +54,14 @@ public class Rabbit extends Animal {
         super(randomAge, field, location);
     }
 
+    /**
+     * @return The characteristics rabbits are written with.
+     */
+    public static SpeciesParameters defaultParameters() {
+        return new SpeciesParameters(BREEDING_AGE, MAX_AGE, BREEDING_PROBABILITY, MAX_LITTER_SIZE,
+                FOOD_FACTOR, FOOD_VALUE, MAX_FOOD_VALUE);
+    }
+
     /**
      * This is what the rabbit does most of the time - it runs
      * around. Sometimes it will breed or die of old age.
@@ -76,8 +89,7 @@ public class Rabbit extends Animal {
             }
             // See if it was possible to move.
             if (newLocation != null) {
-                newLocation.setZindex(this.getLayerValue());
-                setLocation(newLocation);
+                setLocation(onOwnLayer(newLocation));
             } else {
                 // Overcrowding.
                 setDead();
@@ -92,12 +104,12 @@ public class Rabbit extends Animal {
      * @return The animal's maximum age.
      */
     public int getMaxAge() {
-        return MAX_AGE;
+        return getParameters().getMaxAge();
     }
 
     @Override
     public int getMaxFoodValue() {
-        return MAX_FOOD_VALUE;
+        return getParameters().getMaxFoodValue();
     }
 
     /**
@@ -106,7 +118,7 @@ public class Rabbit extends Animal {
      * @return The rabbit's breeding age.
      */
     public int getBreedingAge() {
-        return BREEDING_AGE;
+        return getParameters().getBreedingAge();
     }
 
     /**
@@ -115,7 +127,7 @@ public class Rabbit extends Animal {
      * @return The rabbit's probability age.
      */
     public double getBreedingProbability() {
-        return BREEDING_PROBABILITY;
+        return getParameters().getBreedingProbability();
     }
 
     /**
@@ -124,16 +136,16 @@ public class Rabbit extends Animal {
      * @return The rabbit's maximum litter size.
      */
     public int getMaxLitterSize() {
-        return MAX_LITTER_SIZE;
+        return getParameters().getMaxLitterSize();
     }
 
 
     public int getFoodFactor() {
-        return FOOD_FACTOR;
+        return getParameters().getFoodFactor();
     }
 
     public int getFoodValue() {
-        return FOOD_VALUE;
+        return getParameters().getFoodValue();
     }
 
     @Override
@@ -142,26 +154,13 @@ public class Rabbit extends Animal {
     }
 
     /**
-     * Look for rabbits adjacent to the current location.
-     * Only the first live rabbit is eaten.
+     * Look for plants adjacent to the current location.
+     * A random one of them is eaten.
      *
      * @return Where food was found, or null if it wasn't.
      */
     private Location findFood() {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while (it.hasNext()) {
-            Location where = it.next();
-            Object actor = field.getObjectAt(where);
-            if (actor instanceof Grass || actor instanceof Flower) {
-                Organism organism = (Organism) actor;
-                if (organism.isAlive()) {
-                    return where;
-                }
-            }
-        }
-        return null;
+        return getField().randomNeighbourOfSpecies(getLocation(), 1, Neighbourhood.RING_OTHER_LAYERS, FOOD);
     }
 
     /**
@@ -175,4 +174,9 @@ public class Rabbit extends Animal {
     protected Animal createOrganism(boolean randomAge, Field field, Location location) {
         return new Rabbit(randomAge, field, location);
     }
+
+    @Override
+    public int getLayerValue() {
+        return LAYER;
+    }
 }
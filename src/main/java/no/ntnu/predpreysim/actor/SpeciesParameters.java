@@ -0,0 +1,114 @@
+package no.ntnu.predpreysim.actor;
+
+/**
+ * The characteristics of one species in one simulation: how long it lives,
+ * when and how much it breeds, and how it eats and is eaten. Every species
+ * class has defaults; a simulation may use other values, so that the
+ * parameter space can be explored without recompiling.
+ * Characteristics that do not apply to a species, such as the food factor
+ * of a plant, are left at zero.
+ *
+ * @author asty
+ */
+public class SpeciesParameters {
+    // The age at which the species can start to breed.
+    private int breedingAge;
+    // The age to which the species can live.
+    private int maxAge;
+    // The likelihood of breeding.
+    private double breedingProbability;
+    // The maximum number of births.
+    private int maxLitterSize;
+    // How much an animal gets out of the food value of what it eats.
+    private int foodFactor;
+    // The food value of a single individual to whoever eats it.
+    private int foodValue;
+    // The most food an animal can have, and the food level of a newborn.
+    private int maxFoodValue;
+
+    /**
+     * Create the characteristics of a species.
+     *
+     * @param breedingAge         The age at which the species can start to breed.
+     * @param maxAge              The age to which the species can live.
+     * @param breedingProbability The likelihood of breeding.
+     * @param maxLitterSize       The maximum number of births.
+     * @param foodFactor          How much an animal gets out of what it eats.
+     * @param foodValue           The food value of a single individual.
+     * @param maxFoodValue        The most food an animal can have.
+     */
+    public SpeciesParameters(int breedingAge, int maxAge, double breedingProbability, int maxLitterSize,
+                             int foodFactor, int foodValue, int maxFoodValue) {
+        this.breedingAge = breedingAge;
+        this.maxAge = maxAge;
+        this.breedingProbability = breedingProbability;
+        this.maxLitterSize = maxLitterSize;
+        this.foodFactor = foodFactor;
+        this.foodValue = foodValue;
+        this.maxFoodValue = maxFoodValue;
+    }
+
+    /**
+     * @return A copy that can be changed without changing this one.
+     */
+    public SpeciesParameters copy() {
+        return new SpeciesParameters(breedingAge, maxAge, breedingProbability, maxLitterSize,
+                                     foodFactor, foodValue, maxFoodValue);
+    }
+
+    public int getBreedingAge() {
+        return breedingAge;
+    }
+
+    public void setBreedingAge(int breedingAge) {
+        this.breedingAge = breedingAge;
+    }
+
+    public int getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(int maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public double getBreedingProbability() {
+        return breedingProbability;
+    }
+
+    public void setBreedingProbability(double breedingProbability) {
+        this.breedingProbability = breedingProbability;
+    }
+
+    public int getMaxLitterSize() {
+        return maxLitterSize;
+    }
+
+    public void setMaxLitterSize(int maxLitterSize) {
+        this.maxLitterSize = maxLitterSize;
+    }
+
+    public int getFoodFactor() {
+        return foodFactor;
+    }
+
+    public void setFoodFactor(int foodFactor) {
+        this.foodFactor = foodFactor;
+    }
+
+    public int getFoodValue() {
+        return foodValue;
+    }
+
+    public void setFoodValue(int foodValue) {
+        this.foodValue = foodValue;
+    }
+
+    public int getMaxFoodValue() {
+        return maxFoodValue;
+    }
+
+    public void setMaxFoodValue(int maxFoodValue) {
+        this.maxFoodValue = maxFoodValue;
+    }
+}
@@ -0,0 +1,206 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Fox;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that a simulation resumed from a chain of checkpoints goes on as the
+ * saved one does, and that a chain cut short or damaged falls back to its
+ * last whole entry or is refused.
+ *
+ * @author asty
+ */
+class CheckpointChainTest {
+    // The number of steps between checkpoints, and the number of checkpoints.
+    private static final int INTERVAL = 10;
+    private static final int CHECKPOINTS = 4;
+
+    @TempDir
+    Path folder;
+
+    @RegisterExtension
+    final TestRuns.BoundStream stream = new TestRuns.BoundStream(9);
+
+    /**
+     * Append several checkpoints to a chain while running, go on with the run,
+     * and go on from the chain with another stream bound. Then do the same from
+     * the compacted chain.
+     */
+    @ParameterizedTest
+    @MethodSource("no.ntnu.predpreysim.TestRuns#layoutsAndEngines")
+    void resumedChainMatchesUninterruptedRun(FieldLayout layout, TestRuns.Engine engine) throws IOException {
+        Path file = folder.resolve("run.chain");
+        Simulator original = TestRuns.headless(60, 80, layout, engine);
+        for (int c = 0; c < CHECKPOINTS; c++) {
+            TestRuns.run(original, INTERVAL);
+            original.appendCheckpoint(file);
+        }
+        TestRuns.run(original, 20);
+        String expected = TestRuns.describe(original);
+
+        assertEquals(expected, resume(file, layout, engine, INTERVAL * CHECKPOINTS, 20));
+        Simulator.compactCheckpointChain(file);
+        assertEquals(expected, resume(file, layout, engine, INTERVAL * CHECKPOINTS, 20));
+    }
+
+    @Test
+    void resumedChainCanBeAppendedTo() throws IOException {
+        Path file = folder.resolve("run.chain");
+        Simulator original = TestRuns.headless(60, 80, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+        TestRuns.run(original, INTERVAL);
+        original.appendCheckpoint(file);
+        TestRuns.run(original, 3 * INTERVAL);
+        String expected = TestRuns.describe(original);
+
+        Randomizer.bind(Randomizer.seeded(1));
+        Simulator resumed = TestRuns.headless(60, 80, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+        resumed.restoreCheckpointChain(file);
+        TestRuns.run(resumed, INTERVAL);
+        resumed.appendCheckpoint(file);
+        TestRuns.run(resumed, INTERVAL);
+        resumed.appendCheckpoint(file);
+
+        assertEquals(expected, resume(file, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT, 3 * INTERVAL, INTERVAL));
+    }
+
+    /**
+     * A checkpoint restored into a simulation that appends to a chain replaces
+     * the history of the chain, parameters and all.
+     */
+    @Test
+    void restoredCheckpointStartsNewChain() throws IOException {
+        SimulationParameters parameters = SimulationParameters.defaults();
+        parameters.of(Fox.class).setMaxAge(90);
+        Simulator other = TestRuns.quiet(new Simulator(20, 30, 3, FieldLayout.INTERLEAVED, parameters),
+                TestRuns.Engine.DEFAULT);
+        TestRuns.run(other, 5);
+        Path checkpoint = folder.resolve("other.ckpt");
+        other.saveCheckpoint(checkpoint);
+
+        Path file = save(new ArrayList<>());
+        Simulator simulator = TestRuns.headless(20, 30, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+        simulator.restoreCheckpointChain(file);
+        simulator.restoreCheckpoint(checkpoint);
+        simulator.appendCheckpoint(file);
+
+        Simulator resumed = TestRuns.headless(20, 30, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+        resumed.restoreCheckpointChain(file);
+        assertEquals(5, resumed.getStep());
+        assertEquals(90, resumed.getField().getParameters().of(Fox.class).getMaxAge());
+        assertEquals(TestRuns.describe(other), TestRuns.describe(resumed));
+    }
+
+    @Test
+    void tornTailIsCutOff() throws IOException {
+        List<Long> ends = new ArrayList<>();
+        Path file = save(ends);
+        long end = Files.size(file);
+        // The header of an entry whose contents never made it to disk.
+        byte[] torn = {0x50, 0x50, 0x43, 0x45, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 1, 0, 9, 9, 9};
+        Files.write(file, torn, StandardOpenOption.APPEND);
+
+        Simulator resumed = TestRuns.headless(20, 30, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+        resumed.restoreCheckpointChain(file);
+        assertEquals(INTERVAL * CHECKPOINTS, resumed.getStep());
+        assertEquals(end, Files.size(file));
+    }
+
+    @Test
+    void truncatedChainFallsBackToLastWholeEntry() throws IOException {
+        List<Long> ends = new ArrayList<>();
+        Path file = save(ends);
+        byte[] bytes = Files.readAllBytes(file);
+        for (int entry = 1; entry < ends.size(); entry++) {
+            long cut = (ends.get(entry - 1) + ends.get(entry)) / 2;
+            TestRuns.truncate(file, cut);
+            Simulator resumed = TestRuns.headless(20, 30, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+            resumed.restoreCheckpointChain(file);
+            assertEquals(INTERVAL * entry, resumed.getStep(), "cut at " + cut);
+            Files.write(file, bytes);
+        }
+    }
+
+    @Test
+    void chainWithoutWholeEntryIsRefused() throws IOException {
+        List<Long> ends = new ArrayList<>();
+        Path file = save(ends);
+        TestRuns.assertCutsRefused(file, ends.get(0), () -> CheckpointChain.open(file));
+    }
+
+    @Test
+    void damagedEntryIsDropped() throws IOException {
+        List<Long> ends = new ArrayList<>();
+        Path file = save(ends);
+        byte[] bytes = Files.readAllBytes(file);
+        int last = ends.size() - 1;
+        int middle = (int) ((ends.get(last - 1) + ends.get(last)) / 2);
+        bytes[middle] ^= 0x80;
+        Files.write(file, bytes);
+
+        Simulator resumed = TestRuns.headless(20, 30, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+        resumed.restoreCheckpointChain(file);
+        assertEquals(INTERVAL * last, resumed.getStep());
+    }
+
+    /**
+     * Flip a bit in a sample of the bytes of a chain, one at a time. A damaged
+     * entry is dropped, and a chain that opens must still give a field holding
+     * just its actors.
+     */
+    @Test
+    void damagedBytesAreRefusedOrGiveAConsistentField() throws IOException {
+        Path file = save(new ArrayList<>());
+        byte[] bytes = Files.readAllBytes(file);
+        Path damagedFile = folder.resolve("damaged.chain");
+        for (int i = 0; i < bytes.length; i += i < 256 ? 1 : 7) {
+            byte[] damaged = bytes.clone();
+            damaged[i] ^= 0x80;
+            Files.write(damagedFile, damaged);
+            CheckpointChain chain;
+            try {
+                chain = CheckpointChain.open(damagedFile);
+            } catch (IOException e) {
+                continue;
+            }
+            TestRuns.assertCountsMatch(chain.getField(), chain.takeActors());
+        }
+    }
+
+    /**
+     * @return The state after resuming from a chain and running on.
+     */
+    private static String resume(Path file, FieldLayout layout, TestRuns.Engine engine, int step, int steps)
+            throws IOException {
+        return TestRuns.resume(60, 80, layout, engine, resumed -> resumed.restoreCheckpointChain(file), step, steps);
+    }
+
+    /**
+     * Write a small chain.
+     *
+     * @param ends Receives the size of the file after each entry.
+     * @return The file of the chain.
+     */
+    private Path save(List<Long> ends) throws IOException {
+        Path file = folder.resolve("small.chain");
+        Simulator simulator = TestRuns.headless(20, 30, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+        for (int c = 0; c < CHECKPOINTS; c++) {
+            TestRuns.run(simulator, INTERVAL);
+            simulator.appendCheckpoint(file);
+            ends.add(Files.size(file));
+        }
+        return file;
+    }
+}
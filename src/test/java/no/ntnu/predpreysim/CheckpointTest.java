@@ -0,0 +1,187 @@
+package no.ntnu.predpreysim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that a simulation resumed from a checkpoint goes on as the saved one
+ * does, and that damaged checkpoints are refused.
+ *
+ * @author asty
+ */
+class CheckpointTest {
+    // Set when Tripwire is initialised.
+    private static boolean tripped;
+
+    @TempDir
+    Path folder;
+
+    @RegisterExtension
+    final TestRuns.BoundStream stream = new TestRuns.BoundStream(9);
+
+    /**
+     * Save a run part way, go on with it, and go on from the saved copy with
+     * another stream bound, which the checkpoint must replace.
+     */
+    @ParameterizedTest
+    @MethodSource("no.ntnu.predpreysim.TestRuns#layoutsAndEngines")
+    void resumedRunMatchesUninterruptedRun(FieldLayout layout, TestRuns.Engine engine) throws IOException {
+        Path file = folder.resolve("run.ckpt");
+        Simulator original = TestRuns.headless(60, 80, layout, engine);
+        TestRuns.run(original, 30);
+        original.saveCheckpoint(file);
+        TestRuns.run(original, 30);
+
+        assertEquals(TestRuns.describe(original),
+                TestRuns.resume(60, 80, layout, engine, resumed -> resumed.restoreCheckpoint(file), 30, 30));
+    }
+
+    /**
+     * A simulation kept off the heap runs as one on the heap does, and its
+     * checkpoint restores the storage with the rest of the field.
+     */
+    @Test
+    void offHeapRunMatchesHeapRun() throws IOException {
+        Path file = folder.resolve("run.ckpt");
+        Simulator heap = TestRuns.headless(60, 80, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+        TestRuns.run(heap, 30);
+
+        Randomizer.bind(Randomizer.seeded(9));
+        Simulator offHeap = TestRuns.quiet(new Simulator(60, 80, 3, FieldLayout.INTERLEAVED, FieldStorage.OFF_HEAP),
+                TestRuns.Engine.DEFAULT);
+        assertEquals(FieldStorage.OFF_HEAP, offHeap.getField().getStorage());
+        TestRuns.run(offHeap, 30);
+        assertEquals(TestRuns.describe(heap), TestRuns.describe(offHeap));
+
+        offHeap.saveCheckpoint(file);
+        Simulator resumed = TestRuns.headless(60, 80, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+        resumed.restoreCheckpoint(file);
+        assertEquals(FieldStorage.OFF_HEAP, resumed.getField().getStorage());
+        assertEquals(TestRuns.describe(offHeap), TestRuns.describe(resumed));
+    }
+
+    @Test
+    void truncatedCheckpointIsRefused() throws IOException {
+        byte[] bytes = save();
+        Path file = folder.resolve("small.ckpt");
+        TestRuns.assertCutsRefused(file, bytes.length, () -> read(Files.readAllBytes(file)));
+    }
+
+    @Test
+    void speciesIndexOutOfRangeIsRefused() throws IOException {
+        byte[] bytes = save();
+        ByteBuffer.wrap(bytes).putShort(firstActor(bytes), (short) 1000);
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    void cellOutsideFieldIsRefused() throws IOException {
+        byte[] bytes = save();
+        int record = firstActor(bytes);
+        ByteBuffer.wrap(bytes).putLong(record + 2 + 4 + 4, -2);
+        assertCorrupt(bytes);
+        ByteBuffer.wrap(bytes).putLong(record + 2 + 4 + 4, Long.MAX_VALUE);
+        assertCorrupt(bytes);
+    }
+
+    /**
+     * Flip a bit in every byte after the field shape, one at a time. Many of
+     * them, such as ages, take any value, but a checkpoint that is read must
+     * still give a field holding just its actors. The shape is left alone, as
+     * a damaged one can ask for a field too large to make.
+     */
+    @Test
+    void damagedBytesAreRefusedOrGiveAConsistentField() throws IOException {
+        byte[] bytes = save();
+        for (int i = 4 * 6; i < bytes.length; i++) {
+            byte[] damaged = bytes.clone();
+            damaged[i] ^= 0x80;
+            Checkpoint checkpoint;
+            try {
+                checkpoint = read(damaged);
+            } catch (IOException e) {
+                continue;
+            }
+            TestRuns.assertCountsMatch(checkpoint.field, checkpoint.actors);
+        }
+    }
+
+    @Test
+    void classNamedOnlyAcceptsActorsAndInitialisesNothing() {
+        assertThrows(IOException.class, () -> Checkpoint.classNamed("java.lang.String"));
+        assertThrows(IOException.class, () -> Checkpoint.classNamed("no.ntnu.predpreysim.NoSuchSpecies"));
+        assertThrows(IOException.class, () -> Checkpoint.classNamed(Tripwire.class.getName()));
+        assertFalse(tripped);
+    }
+
+    @Test
+    void classNamedFindsSpecies() throws IOException {
+        assertTrue(no.ntnu.predpreysim.actor.Actor.class.isAssignableFrom(
+                Checkpoint.classNamed("no.ntnu.predpreysim.actor.Fox")));
+    }
+
+    /**
+     * A class that records being initialised.
+     */
+    static class Tripwire {
+        static {
+            tripped = true;
+        }
+    }
+
+    /**
+     * @return A small checkpoint, part way into a run.
+     */
+    private byte[] save() throws IOException {
+        Simulator simulator = TestRuns.headless(20, 30, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT);
+        TestRuns.run(simulator, 5);
+        Path file = folder.resolve("small.ckpt");
+        simulator.saveCheckpoint(file);
+        return Files.readAllBytes(file);
+    }
+
+    private static Checkpoint read(byte[] bytes) throws IOException {
+        return Checkpoint.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    private static void assertCorrupt(byte[] bytes) {
+        IOException e = assertThrows(IOException.class, () -> read(bytes));
+        assertTrue(e.getMessage().startsWith("Corrupt checkpoint"), e.getMessage());
+    }
+
+    /**
+     * @return Where the record of the first actor starts, found by reading up to it.
+     */
+    private static int firstActor(byte[] bytes) throws IOException {
+        Checkpoint.Input in = new Checkpoint.Input(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        in.ensure(4 * 6);
+        in.buffer.position(in.buffer.position() + 4 * 6);
+        in.getString();
+        in.getString();
+        Checkpoint.readParameters(in);
+        in.ensure(4);
+        int types = in.buffer.getInt();
+        for (int t = 0; t < types; t++) {
+            in.getString();
+        }
+        in.ensure(4);
+        assertTrue(in.buffer.getInt() > 0);
+        // The checkpoint fits the buffer, so it was read in one go from the start.
+        return in.buffer.position();
+    }
+}
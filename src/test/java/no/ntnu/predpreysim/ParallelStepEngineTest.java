@@ -0,0 +1,37 @@
+package no.ntnu.predpreysim;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that the parallel engine on a pool of several threads gives the same
+ * fields as its schedule run on one thread.
+ *
+ * @author asty
+ */
+class ParallelStepEngineTest {
+    // Large enough for four tiles of every colour, so each phase runs tiles side by side.
+    private static final int SIZE = 4 * ParallelStepEngine.TILE_SIZE;
+
+    @Test
+    void poolMatchesSequentialSchedule() {
+        checkPool(FieldLayout.INTERLEAVED);
+    }
+
+    @Test
+    void poolMatchesSequentialScheduleOnChunkedLayout() {
+        checkPool(FieldLayout.CHUNKED);
+    }
+
+    private static void checkPool(FieldLayout layout) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(0, ParallelStepEngine.compare(SIZE, SIZE, 3, layout, 20, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
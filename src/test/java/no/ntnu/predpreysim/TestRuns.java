@@ -0,0 +1,220 @@
+package no.ntnu.predpreysim;
+
+import no.ntnu.predpreysim.actor.Actor;
+import no.ntnu.predpreysim.actor.ActorState;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.provider.Arguments;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Helpers for the tests that save a simulation and go on from the saved copy.
+ *
+ * @author asty
+ */
+final class TestRuns {
+    private TestRuns() {
+    }
+
+    /**
+     * The step engines a saved run is tried with. Each call of make gives a new
+     * engine, so a run and the copy resumed from it never share one.
+     */
+    enum Engine {
+        DEFAULT {
+            @Override
+            StepEngine make() {
+                return null;
+            }
+        },
+        BUFFERED {
+            @Override
+            StepEngine make() {
+                return new BufferedStepEngine();
+            }
+        },
+        PARALLEL {
+            @Override
+            StepEngine make() {
+                return ParallelStepEngine.sequential();
+            }
+        };
+
+        /**
+         * @return A new engine, or null for the one a simulator starts with.
+         */
+        abstract StepEngine make();
+    }
+
+    /**
+     * A restore of a simulation from a saved copy.
+     */
+    interface Restore {
+        void restore(Simulator simulator) throws IOException;
+    }
+
+    /**
+     * Binds a seeded stream to the thread before each test and puts the one it
+     * replaced back after it. Tests register it with RegisterExtension.
+     */
+    static final class BoundStream implements BeforeEachCallback, AfterEachCallback {
+        // The seed of the stream bound before each test.
+        private final long seed;
+        // The stream bound before the test, put back after it.
+        private Randomizer.Stream previous;
+
+        BoundStream(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public void beforeEach(ExtensionContext context) {
+            previous = Randomizer.bind(Randomizer.seeded(seed));
+        }
+
+        @Override
+        public void afterEach(ExtensionContext context) {
+            Randomizer.bind(previous);
+        }
+    }
+
+    /**
+     * @return The layouts and engines a saved run is tried with, for parameterised tests.
+     */
+    static Stream<Arguments> layoutsAndEngines() {
+        return Stream.of(
+                Arguments.of(FieldLayout.INTERLEAVED, Engine.DEFAULT),
+                Arguments.of(FieldLayout.PADDED, Engine.DEFAULT),
+                Arguments.of(FieldLayout.PLANAR, Engine.DEFAULT),
+                Arguments.of(FieldLayout.CHUNKED, Engine.BUFFERED),
+                Arguments.of(FieldLayout.INTERLEAVED, Engine.PARALLEL));
+    }
+
+    /**
+     * Make a headless simulation, populated from the stream bound to the current thread.
+     *
+     * @param engine The engine to step with.
+     */
+    static Simulator headless(int height, int width, FieldLayout layout, Engine engine) {
+        return quiet(new Simulator(height, width, 3, layout), engine);
+    }
+
+    /**
+     * Turn off the output of a simulation and give it a new engine.
+     *
+     * @return The simulation.
+     */
+    static Simulator quiet(Simulator simulator, Engine engine) {
+        simulator.setOutputPolicy(OutputPolicy.none());
+        StepEngine stepEngine = engine.make();
+        if (stepEngine != null) {
+            simulator.setStepEngine(stepEngine);
+        }
+        return simulator;
+    }
+
+    /**
+     * Restore a new headless simulation with another stream bound, which the
+     * saved copy must replace, and run it on.
+     *
+     * @param step  The step the saved copy was taken at.
+     * @param steps The number of steps to run on.
+     * @return The state after running on.
+     */
+    static String resume(int height, int width, FieldLayout layout, Engine engine, Restore restore,
+                         int step, int steps) throws IOException {
+        Randomizer.bind(Randomizer.seeded(12345));
+        Simulator resumed = headless(height, width, layout, engine);
+        restore.restore(resumed);
+        assertEquals(step, resumed.getStep());
+        run(resumed, steps);
+        return describe(resumed);
+    }
+
+    /**
+     * Take a number of steps.
+     */
+    static void run(Simulator simulator, int steps) {
+        for (int i = 0; i < steps; i++) {
+            simulator.simulateOneStep();
+        }
+    }
+
+    /**
+     * Describe the state of a simulation: the step, and the species, age and
+     * food level or size of the actor in every cell. Two runs that are the
+     * same give the same description.
+     */
+    static String describe(Simulator simulator) {
+        Field field = simulator.getField();
+        StringBuilder description = new StringBuilder("step ").append(simulator.getStep());
+        for (int row = 0; row < field.getHeight(); row++) {
+            for (int col = 0; col < field.getWidth(); col++) {
+                for (int zindex = 0; zindex < field.getDepth(); zindex++) {
+                    Object occupant = field.getObjectAt(row, col, zindex);
+                    if (occupant != null) {
+                        Actor actor = (Actor) occupant;
+                        description.append('\n').append(row).append(',').append(col).append(',').append(zindex)
+                                .append(' ').append(actor.getClass().getSimpleName())
+                                .append(' ').append(ActorState.getAge(actor))
+                                .append(' ').append(ActorState.getState(actor));
+                    }
+                }
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Check that the field holds the actors of a list that are in their cells
+     * and no others: its count of each species is the number of them. A load
+     * of a damaged file that is not refused must still give this.
+     */
+    static void assertCountsMatch(Field field, List<Actor> actors) {
+        int[] counts = new int[Species.count()];
+        for (Actor actor : actors) {
+            if (actor.isActive() && actor.getLocation() != null && field.getObjectAt(actor.getLocation()) == actor) {
+                counts[Species.idOf(actor.getClass())]++;
+            }
+        }
+        for (int id = 0; id < counts.length; id++) {
+            assertEquals(counts[id], field.getCount(id), Species.classOf(id).getSimpleName());
+        }
+    }
+
+    /**
+     * Cut a file short at a sample of lengths, from one byte short of an end
+     * down to nothing, and check that each is refused. The file is put back
+     * after each cut.
+     *
+     * @param end  The length to cut below.
+     * @param load Loads the file.
+     */
+    static void assertCutsRefused(Path file, long end, Executable load) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        for (long length = end - 1; length >= 0; length -= Math.max(1, length / 8)) {
+            truncate(file, length);
+            assertThrows(IOException.class, load, "cut at " + length);
+            Files.write(file, bytes);
+        }
+    }
+
+    /**
+     * Cut a file down to its first bytes.
+     */
+    static void truncate(Path file, long length) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, (int) length));
+    }
+}
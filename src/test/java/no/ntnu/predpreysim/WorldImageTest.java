@@ -0,0 +1,139 @@
+package no.ntnu.predpreysim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that a simulation started from a world image runs as the one the image
+ * was saved from, and that damaged images are refused.
+ *
+ * @author asty
+ */
+class WorldImageTest {
+    // The offset of the first field after the preamble: the height.
+    private static final int SHAPE_OFFSET = 4 + 4 + 8 + 8 + 8 + 8;
+    // The size of an actor record: cell, age, food level or size, species and padding.
+    private static final int RECORD_SIZE = 8 + 4 + 4 + 2 + 2;
+
+    @TempDir
+    Path folder;
+
+    @RegisterExtension
+    final TestRuns.BoundStream stream = new TestRuns.BoundStream(7);
+
+    /**
+     * Save a freshly populated world, then run it and the image side by side
+     * from the same seed. Resetting the image simulation must go back to the image.
+     */
+    @ParameterizedTest
+    @MethodSource("no.ntnu.predpreysim.TestRuns#layoutsAndEngines")
+    void imageRunsAsTheWorldItWasSavedFrom(FieldLayout layout, TestRuns.Engine engine) throws IOException {
+        Path file = folder.resolve("world.img");
+        Simulator original = TestRuns.headless(60, 80, layout, engine);
+        original.saveWorldImage(file);
+        Simulator loaded = TestRuns.quiet(new Simulator(file), engine);
+        assertEquals(TestRuns.describe(original), TestRuns.describe(loaded));
+
+        String expected = runSeeded(original, 40);
+        assertEquals(expected, runSeeded(loaded, 40));
+        loaded.reset();
+        assertEquals(expected, runSeeded(loaded, 40));
+    }
+
+    /**
+     * @return The state after running for some steps from a fixed seed.
+     */
+    private static String runSeeded(Simulator simulator, int steps) {
+        Randomizer.Stream outer = Randomizer.bind(Randomizer.seeded(42));
+        try {
+            TestRuns.run(simulator, steps);
+            return TestRuns.describe(simulator);
+        } finally {
+            Randomizer.bind(outer);
+        }
+    }
+
+    @Test
+    void truncatedImageIsRefused() throws IOException {
+        Path file = save();
+        TestRuns.assertCutsRefused(file, Files.size(file), () -> new Simulator(file));
+    }
+
+    @Test
+    void recordInAnotherCellIsRefused() throws IOException {
+        Path file = save();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer preamble = ByteBuffer.allocate(SHAPE_OFFSET);
+            channel.read(preamble, 0);
+            long recordsOffset = preamble.getLong(4 + 4 + 8 + 8);
+            // Put the first record in the cell of the second, which follows it.
+            ByteBuffer cell = ByteBuffer.allocate(8);
+            channel.read(cell, recordsOffset + RECORD_SIZE);
+            cell.rewind();
+            channel.write(cell, recordsOffset);
+        }
+        assertThrows(IOException.class, () -> new Simulator(file));
+    }
+
+    @Test
+    void recordOutsideFieldIsRefused() throws IOException {
+        Path file = save();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer preamble = ByteBuffer.allocate(SHAPE_OFFSET);
+            channel.read(preamble, 0);
+            long recordsOffset = preamble.getLong(4 + 4 + 8 + 8);
+            ByteBuffer cell = ByteBuffer.allocate(8);
+            cell.putLong(0, -1);
+            channel.write(cell, recordsOffset);
+        }
+        assertThrows(IOException.class, () -> new Simulator(file));
+    }
+
+    /**
+     * Flip a bit in every byte of the preamble, shape, parameters and species,
+     * and in a sample of the records and index. Values such as ages take
+     * any value, but an image that loads must still give a field holding just
+     * its actors.
+     */
+    @Test
+    void damagedBytesAreRefusedOrGiveAConsistentField() throws IOException {
+        Path file = save();
+        byte[] bytes = Files.readAllBytes(file);
+        long recordsOffset = ByteBuffer.wrap(bytes).getLong(4 + 4 + 8 + 8);
+        Path damagedFile = folder.resolve("damaged.img");
+        for (int i = 0; i < bytes.length; i += i < recordsOffset ? 1 : 11) {
+            byte[] damaged = bytes.clone();
+            damaged[i] ^= 0x80;
+            Files.write(damagedFile, damaged);
+            WorldImage image;
+            try (FileChannel channel = FileChannel.open(damagedFile, StandardOpenOption.READ)) {
+                image = WorldImage.load(channel);
+            } catch (IOException e) {
+                continue;
+            }
+            TestRuns.assertCountsMatch(image.getField(), image.getActors());
+        }
+    }
+
+    /**
+     * @return A small world image.
+     */
+    private Path save() throws IOException {
+        Path file = folder.resolve("small.img");
+        TestRuns.headless(20, 30, FieldLayout.INTERLEAVED, TestRuns.Engine.DEFAULT).saveWorldImage(file);
+        return file;
+    }
+}